@@ -0,0 +1,80 @@
+package my.git.mailmap;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Compares parsing mailmap lines with {@link MailMapEntry#parseEntry} against
+ * the regular expression it replaced, on a mix of the entry forms found in
+ * real mailmap files.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MailMapEntryBenchmark {
+
+   @Param("1000")
+   public int lines;
+
+   private List<String> entries;
+
+   @Setup
+   public void createEntries() {
+      Random random = new Random(42);
+      entries = new ArrayList<>(lines);
+      for (int i = 0; i < lines; i++) {
+         String proper = "Proper Name" + i + " <proper" + i + "@example.com>";
+         String commit = "Commit Name" + i + " <commit" + i + "@example.com>";
+         switch (random.nextInt(5)) {
+         case 0:
+            entries.add(proper);
+            break;
+         case 1:
+            entries.add("<proper" + i + "@example.com> <commit" + i + "@example.com>");
+            break;
+         case 2:
+            entries.add(proper + " " + commit);
+            break;
+         case 3:
+            entries.add(proper + " " + commit + " # comment " + i);
+            break;
+         default:
+            entries.add("# comment " + i);
+            break;
+         }
+      }
+   }
+
+   @Benchmark
+   public void scanner(Blackhole blackhole) {
+      for (String entry : entries) {
+         blackhole.consume(MailMapEntry.parseEntry(entry));
+      }
+   }
+
+   @Benchmark
+   public void regex(Blackhole blackhole) {
+      for (String entry : entries) {
+         blackhole.consume(MailMapEntry.parseEntryWithRegex(entry));
+      }
+   }
+
+}
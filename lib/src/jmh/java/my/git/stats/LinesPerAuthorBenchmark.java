@@ -0,0 +1,125 @@
+package my.git.stats;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jgit.api.Git;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import my.git.mailmap.GitRepoUtils;
+import my.git.stats.LinesPerAuthor.DirBlameResult;
+import my.git.stats.LinesPerAuthor.FileBlameResult;
+
+/**
+ * Benchmarks the stages of {@link LinesPerAuthor} on a {@link SyntheticRepo}:
+ * blaming a single file, blaming the whole repository with each engine and
+ * scanning the history for authors.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LinesPerAuthorBenchmark {
+
+   @Param("100")
+   public int files;
+
+   @Param("500")
+   public int commits;
+
+   @Param("10")
+   public int authors;
+
+   @Param("3")
+   public int dirDepth;
+
+   @Param("3")
+   public int filesPerCommit;
+
+   @Param("whitespace-insensitive")
+   public String profile;
+
+   private Git git;
+   private BlameTargets targets;
+   private List<BlameTargets.Target> targetList;
+   private int nextTarget;
+
+   private static void collectTargets(BlameTargets.Dir dir, List<BlameTargets.Target> targets) {
+      targets.addAll(dir.files);
+      for (BlameTargets.Dir child : dir.dirs) {
+         collectTargets(child, targets);
+      }
+   }
+
+   @Setup(Level.Trial)
+   public void openRepo() throws IOException {
+      git = new SyntheticRepo().setFiles(files).setCommits(commits).setAuthors(authors)
+            .setDirDepth(dirDepth).setFilesPerCommit(filesPerCommit).open();
+      targets = BlameTargets.fromRevision(git.getRepository(), "HEAD");
+      targetList = new ArrayList<>();
+      collectTargets(targets.getRoot(), targetList);
+   }
+
+   @TearDown(Level.Trial)
+   public void closeRepo() {
+      git.close();
+   }
+
+   private BlameContext newContext() {
+      BlameContext context = new BlameContext(new BlameCounts());
+      context.profile = BlameProfile.parse(profile);
+      return context;
+   }
+
+   /**
+    * Blames one file per invocation, going through all files in turn.
+    */
+   @Benchmark
+   public FileBlameResult countFile() {
+      BlameTargets.Target target = targetList.get(nextTarget++ % targetList.size());
+      return LinesPerAuthor.countFile(git, target, targets.getCommitId(), newContext());
+   }
+
+   @Benchmark
+   public DirBlameResult countFilesSequential() {
+      return LinesPerAuthor.countFiles(git, targets, newContext());
+   }
+
+   @Benchmark
+   public DirBlameResult countFilesParallel() throws IOException {
+      return new ParallelBlame(git.getRepository().getDirectory(),
+            Runtime.getRuntime().availableProcessors(), newContext()).countFiles(targets);
+   }
+
+   @Benchmark
+   public DirBlameResult historyReplay() throws IOException {
+      return HistoryReplay.countFiles(git.getRepository(), targets, newContext());
+   }
+
+   @Benchmark
+   public int authorScan() throws IOException {
+      return GitRepoUtils.getAuthors(git).size();
+   }
+
+   @Benchmark
+   public int distinctAuthorScan() throws IOException {
+      return GitRepoUtils.scanAuthors(git).size();
+   }
+
+}
@@ -0,0 +1,201 @@
+package my.git.stats;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.lib.PersonIdent;
+
+/**
+ * Generates repositories with a synthetic history for the benchmarks. The
+ * content and history only depend on the parameters, including the seed, so the
+ * same parameters always give the same repository, and generated repositories
+ * are kept in a directory under the system temp directory so later runs reuse
+ * them.
+ * <p>
+ * The first commit adds every file, at a random directory depth of up to the
+ * directory depth. Every later commit is made by a random author and changes a
+ * few lines of a number of random files, by replacing, inserting or deleting
+ * lines, so the history depth of a file grows with the number of commits and the
+ * files changed per commit.
+ */
+public class SyntheticRepo {
+
+   private static final long START_TIME = 1_600_000_000L;
+   private static final long COMMIT_INTERVAL = 60 * 60;
+
+   private int files = 100;
+   private int commits = 500;
+   private int authors = 10;
+   private int dirDepth = 3;
+   private int linesPerFile = 200;
+   private int filesPerCommit = 3;
+   private long seed = 42;
+
+   /**
+    * Opens the repository for the parameters, generating it first if it does not
+    * exist yet.
+    *
+    * @return the repository
+    * @throws IOException if the repository cannot be written
+    */
+   public Git open() throws IOException {
+      File directory = new File(System.getProperty("java.io.tmpdir"),
+            "lines-per-author-bench/" + getName());
+      File complete = new File(directory, ".complete");
+      if (!complete.isFile()) {
+         deleteRecursively(directory);
+         try {
+            generate(directory).close();
+         } catch (GitAPIException e) {
+            throw new IOException("Could not generate " + directory, e);
+         }
+         Files.createFile(complete.toPath());
+      }
+      return Git.open(directory);
+   }
+
+   private static void deleteRecursively(File file) throws IOException {
+      File[] children = file.listFiles();
+      if (children != null) {
+         for (File child : children) {
+            deleteRecursively(child);
+         }
+      }
+      Files.deleteIfExists(file.toPath());
+   }
+
+   /**
+    * Creates the repository in an empty directory.
+    *
+    * @param directory the directory to create the repository in
+    * @return the generated repository
+    * @throws IOException     if a file cannot be written
+    * @throws GitAPIException if a commit fails
+    */
+   public Git generate(File directory) throws IOException, GitAPIException {
+      Random random = new Random(seed);
+      Git git = Git.init().setDirectory(directory).call();
+      File workTree = git.getRepository().getWorkTree();
+
+      List<String> paths = new ArrayList<>();
+      List<List<String>> contents = new ArrayList<>();
+      for (int i = 0; i < files; i++) {
+         StringBuilder path = new StringBuilder();
+         int fileDepth = random.nextInt(dirDepth + 1);
+         for (int d = 0; d < fileDepth; d++) {
+            path.append("dir").append(random.nextInt(4)).append('/');
+         }
+         path.append("File").append(i).append(".java");
+         paths.add(path.toString());
+         List<String> lines = new ArrayList<>();
+         for (int line = 0; line < linesPerFile; line++) {
+            lines.add(randomLine(random));
+         }
+         contents.add(lines);
+         write(workTree, path.toString(), lines);
+      }
+      git.add().addFilepattern(".").call();
+      commit(git, 0, 0);
+
+      for (int c = 1; c < commits; c++) {
+         for (int f = 0; f < filesPerCommit; f++) {
+            int file = random.nextInt(files);
+            List<String> lines = contents.get(file);
+            int changes = 1 + random.nextInt(5);
+            for (int change = 0; change < changes; change++) {
+               int line = random.nextInt(lines.size() + 1);
+               int kind = random.nextInt(3);
+               if (kind == 0 && line < lines.size()) {
+                  lines.set(line, randomLine(random));
+               } else if (kind == 1 || lines.size() < 2) {
+                  lines.add(line, randomLine(random));
+               } else if (line < lines.size()) {
+                  lines.remove(line);
+               }
+            }
+            write(workTree, paths.get(file), lines);
+            git.add().addFilepattern(paths.get(file)).call();
+         }
+         commit(git, c, random.nextInt(authors));
+      }
+      return git;
+   }
+
+   private static String randomLine(Random random) {
+      String[] words = { "int", "value", "return", "if", "count", "lines", "author", "+", "=",
+            "final", "list", "size", "(", ")", ";", "{", "}" };
+      StringBuilder line = new StringBuilder("   ");
+      int wordCount = 1 + random.nextInt(8);
+      for (int i = 0; i < wordCount; i++) {
+         line.append(words[random.nextInt(words.length)]).append(' ');
+      }
+      return line.append(random.nextInt(1000)).toString();
+   }
+
+   private static void write(File workTree, String path, List<String> lines) throws IOException {
+      File file = new File(workTree, path);
+      file.getParentFile().mkdirs();
+      Files.write(file.toPath(), lines, StandardCharsets.UTF_8);
+   }
+
+   private static void commit(Git git, int commit, int author) throws GitAPIException {
+      PersonIdent ident = new PersonIdent("Author " + author, "author" + author + "@example.com",
+            Instant.ofEpochSecond(START_TIME + commit * COMMIT_INTERVAL), ZoneOffset.UTC);
+      git.commit().setMessage("Commit " + commit).setAuthor(ident).setCommitter(ident)
+            .setAllowEmpty(true).call();
+   }
+
+   /**
+    * @return a name that is unique for the parameters of the repository
+    */
+   public String getName() {
+      return String.join("-", Arrays.asList("f" + files, "c" + commits, "a" + authors,
+            "d" + dirDepth, "l" + linesPerFile, "p" + filesPerCommit, "s" + seed));
+   }
+
+   public SyntheticRepo setAuthors(int authors) {
+      this.authors = authors;
+      return this;
+   }
+
+   public SyntheticRepo setCommits(int commits) {
+      this.commits = commits;
+      return this;
+   }
+
+   public SyntheticRepo setDirDepth(int dirDepth) {
+      this.dirDepth = dirDepth;
+      return this;
+   }
+
+   public SyntheticRepo setFiles(int files) {
+      this.files = files;
+      return this;
+   }
+
+   public SyntheticRepo setFilesPerCommit(int filesPerCommit) {
+      this.filesPerCommit = filesPerCommit;
+      return this;
+   }
+
+   public SyntheticRepo setLinesPerFile(int linesPerFile) {
+      this.linesPerFile = linesPerFile;
+      return this;
+   }
+
+   public SyntheticRepo setSeed(long seed) {
+      this.seed = seed;
+      return this;
+   }
+
+}
@@ -1,7 +1,12 @@
 package my.git.mailmap;
 
+import java.util.Locale;
 import java.util.Objects;
 
+/**
+ * The name and email of a person. The hash code is computed when the author is
+ * created, and equal authors can be shared through an {@link AuthorPool}.
+ */
 public class Author {
    public static Author parse(String authorString) {
       String[] parts = authorString.split(", ");
@@ -15,9 +20,15 @@ public class Author {
 
    private final String email;
 
+   private final String emailKey;
+
+   private final int hash;
+
    public Author(String name, String email) {
       this.name = name;
       this.email = email;
+      this.emailKey = email == null ? "" : email.trim().toLowerCase(Locale.ROOT);
+      this.hash = Objects.hash(email, name);
    }
 
    @Override
@@ -27,20 +38,29 @@ public class Author {
       if ((obj == null) || (getClass() != obj.getClass()))
          return false;
       Author other = (Author) obj;
-      return Objects.equals(email, other.email) && Objects.equals(name, other.name);
+      return hash == other.hash && Objects.equals(email, other.email)
+            && Objects.equals(name, other.name);
    }
 
    public String getEmail() {
       return email;
    }
 
+   /**
+    * @return the email trimmed and in lower case, which is how git compares
+    *         emails
+    */
+   public String getEmailKey() {
+      return emailKey;
+   }
+
    public String getName() {
       return name;
    }
 
    @Override
    public int hashCode() {
-      return Objects.hash(email, name);
+      return hash;
    }
 
    @Override
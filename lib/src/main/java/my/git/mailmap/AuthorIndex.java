@@ -0,0 +1,184 @@
+package my.git.mailmap;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.function.Consumer;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.errors.IncorrectObjectTypeException;
+import org.eclipse.jgit.errors.MissingObjectException;
+import org.eclipse.jgit.lib.NullProgressMonitor;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ProgressMonitor;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevWalk;
+
+import my.git.util.AtomicFiles;
+
+/**
+ * The distinct authors of a repository, see {@link GitRepoUtils#scanAuthors},
+ * saved to a file together with the ref tips they were scanned from. When the
+ * index is updated, only the commits reachable from the current refs but not
+ * from the saved tips are walked, so opening a repository that was scanned
+ * before costs a walk of the new commits only.
+ * <p>
+ * Commits that are no longer reachable, for example after a branch was deleted
+ * or rewritten, stay counted. An index that cannot be read is rebuilt from a
+ * full scan.
+ */
+public class AuthorIndex {
+
+   private static final int MAGIC = 0x41555448;
+   private static final int VERSION = 1;
+
+   /**
+    * Returns the file the index of a repository is kept in by default, which is
+    * inside its git directory.
+    *
+    * @param repository the indexed repository
+    * @return the default index file
+    */
+   public static File getDefaultFile(Repository repository) {
+      return new File(repository.getDirectory(), "author-index");
+   }
+
+   /**
+    * Loads the index of a repository, updates it with the commits that became
+    * reachable since it was saved and saves it back.
+    *
+    * @param git  the git repository on the local filesystem
+    * @param file the index file, which is created if it does not exist
+    * @return the updated index
+    * @throws IOException if the history cannot be read or the index cannot be
+    *                     written
+    */
+   public static AuthorIndex update(Git git, File file) throws IOException {
+      return update(git, file, author -> {
+      }, NullProgressMonitor.INSTANCE);
+   }
+
+   /**
+    * Loads the index of a repository, updates it with the commits that became
+    * reachable since it was saved and saves it back, reporting the authors as
+    * they are found. A cancelled update leaves the saved index as it was.
+    *
+    * @param git     the git repository on the local filesystem
+    * @param file    the index file, which is created if it does not exist
+    * @param authors receives every distinct author once: first the authors of
+    *                the saved index, then the authors of the walked commits as
+    *                soon as they are found
+    * @param monitor is updated with the number of walked commits and can cancel
+    *                the update
+    * @return the updated index
+    * @throws IOException           if the history cannot be read or the index
+    *                               cannot be written
+    * @throws CancellationException if the monitor cancelled the update
+    */
+   public static AuthorIndex update(Git git, File file, Consumer<Author> authors,
+         ProgressMonitor monitor) throws IOException {
+      AuthorIndex index = new AuthorIndex();
+      if (file.isFile()) {
+         try {
+            index.read(file);
+         } catch (IOException e) {
+            // rebuilt from scratch below
+            index = new AuthorIndex();
+         }
+      }
+
+      index.byAuthor.keySet().forEach(authors);
+
+      Repository repository = git.getRepository();
+      try (RevWalk revWalk = new RevWalk(repository)) {
+         Set<ObjectId> tips = GitRepoUtils.getRefTips(repository, revWalk);
+         for (ObjectId tip : tips) {
+            revWalk.markStart(revWalk.parseCommit(tip));
+         }
+         for (ObjectId savedTip : index.tips) {
+            try {
+               revWalk.markUninteresting(revWalk.parseCommit(savedTip));
+            } catch (MissingObjectException | IncorrectObjectTypeException e) {
+               // pruned since the index was saved
+            }
+         }
+         // the raw identities are indexed, since they are what a mailmap maps
+         index.newCommits = GitRepoUtils.scanAuthors(revWalk, null, index.byAuthor, authors,
+               monitor);
+         index.tips = tips;
+      }
+      index.write(file);
+      return index;
+   }
+
+   private final Map<Author, AuthorSummary> byAuthor = new LinkedHashMap<>();
+
+   private Set<ObjectId> tips = new LinkedHashSet<>();
+
+   private int newCommits;
+
+   private AuthorIndex() {
+   }
+
+   /**
+    * @return the distinct authors, in the order they were first found
+    */
+   public List<AuthorSummary> getAuthors() {
+      return new ArrayList<>(byAuthor.values());
+   }
+
+   /**
+    * @return the number of commits walked by the last update
+    */
+   public int getNewCommits() {
+      return newCommits;
+   }
+
+   private void read(File file) throws IOException {
+      AtomicFiles.read(file, MAGIC, VERSION, "an author index", in -> {
+         byte[] rawId = new byte[20];
+         int tipCount = in.readInt();
+         for (int i = 0; i < tipCount; i++) {
+            in.readFully(rawId);
+            tips.add(ObjectId.fromRaw(rawId));
+         }
+         int authorCount = in.readInt();
+         for (int i = 0; i < authorCount; i++) {
+            Author author = new Author(in.readUTF(), in.readUTF());
+            byAuthor.put(author, new AuthorSummary(author, in.readInt(), in.readLong(),
+                  in.readLong()));
+         }
+         return this;
+      });
+   }
+
+   /**
+    * Writes the index to a temporary file, which then replaces the index file
+    * atomically.
+    */
+   private void write(File file) throws IOException {
+      AtomicFiles.write(file, MAGIC, VERSION, out -> {
+         byte[] rawId = new byte[20];
+         out.writeInt(tips.size());
+         for (ObjectId tip : tips) {
+            tip.copyRawTo(rawId, 0);
+            out.write(rawId);
+         }
+         out.writeInt(byAuthor.size());
+         for (AuthorSummary summary : byAuthor.values()) {
+            out.writeUTF(summary.getAuthor().getName());
+            out.writeUTF(summary.getAuthor().getEmail());
+            out.writeInt(summary.getCommitCount());
+            out.writeLong(summary.getFirstSeen().getEpochSecond());
+            out.writeLong(summary.getLastSeen().getEpochSecond());
+         }
+      });
+   }
+
+}
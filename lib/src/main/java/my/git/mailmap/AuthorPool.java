@@ -0,0 +1,48 @@
+package my.git.mailmap;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Shares equal {@link Author} instances. The history of a repository holds the
+ * same few identities many times over, so interning them keeps one instance per
+ * identity in memory, and sets of interned authors mostly find their elements
+ * by reference.
+ * <p>
+ * A pool can be shared between threads.
+ */
+public final class AuthorPool {
+
+   private final Map<Author, Author> authors = new ConcurrentHashMap<>();
+
+   /**
+    * Returns the canonical instance of an author, which is the author itself if
+    * the pool does not hold an equal author yet.
+    *
+    * @param author the author to intern
+    * @return the author in the pool that is equal to the given author
+    */
+   public Author intern(Author author) {
+      Author canonical = authors.putIfAbsent(author, author);
+      return canonical == null ? author : canonical;
+   }
+
+   /**
+    * Returns the canonical instance of an author with a name and email.
+    *
+    * @param name  the name of the author
+    * @param email the email of the author
+    * @return the author in the pool with the name and email
+    */
+   public Author get(String name, String email) {
+      return intern(new Author(name, email));
+   }
+
+   /**
+    * @return the number of distinct authors in the pool
+    */
+   public int size() {
+      return authors.size();
+   }
+
+}
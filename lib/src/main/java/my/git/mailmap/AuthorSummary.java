@@ -0,0 +1,72 @@
+package my.git.mailmap;
+
+import java.time.Instant;
+
+/**
+ * A distinct author identity found in the history of a repository, with the
+ * number of commits it authored and when it was first and last seen, see
+ * {@link GitRepoUtils#scanAuthors}.
+ */
+public class AuthorSummary {
+
+   private final Author author;
+
+   private int commitCount;
+
+   private long firstSeen;
+
+   private long lastSeen;
+
+   /**
+    * @param author      the identity
+    * @param commitCount the number of commits authored by the identity
+    * @param firstSeen   the earliest author time, in seconds since the epoch
+    * @param lastSeen    the latest author time, in seconds since the epoch
+    */
+   public AuthorSummary(Author author, int commitCount, long firstSeen, long lastSeen) {
+      this.author = author;
+      this.commitCount = commitCount;
+      this.firstSeen = firstSeen;
+      this.lastSeen = lastSeen;
+   }
+
+   /**
+    * Counts another commit of the identity.
+    *
+    * @param authorTime the author time of the commit, in seconds since the epoch
+    */
+   void addCommit(long authorTime) {
+      commitCount++;
+      firstSeen = Math.min(firstSeen, authorTime);
+      lastSeen = Math.max(lastSeen, authorTime);
+   }
+
+   public Author getAuthor() {
+      return author;
+   }
+
+   public int getCommitCount() {
+      return commitCount;
+   }
+
+   /**
+    * @return the author time of the earliest commit of the identity
+    */
+   public Instant getFirstSeen() {
+      return Instant.ofEpochSecond(firstSeen);
+   }
+
+   /**
+    * @return the author time of the latest commit of the identity
+    */
+   public Instant getLastSeen() {
+      return Instant.ofEpochSecond(lastSeen);
+   }
+
+   @Override
+   public String toString() {
+      return author + " (" + commitCount + " commits, " + getFirstSeen() + " to " + getLastSeen()
+            + ")";
+   }
+
+}
@@ -1,15 +1,35 @@
 package my.git.mailmap;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.function.Consumer;
 
 import org.eclipse.jgit.api.Git;
 import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.lib.NullProgressMonitor;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.lib.ProgressMonitor;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevObject;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.util.RawParseUtils;
 
 public class GitRepoUtils {
 
+   /** The number of commits between two updates of a progress monitor. */
+   private static final int PROGRESS_INTERVAL = 256;
+
    /**
     * Retrieves a list of authors from the commit history of a git repository.
     *
@@ -22,6 +42,8 @@ public class GitRepoUtils {
     */
    public static List<Author> getAuthors(Git git) throws IOException {
       List<Author> authors = new ArrayList<>();
+      // one instance per identity instead of one per commit
+      AuthorPool pool = new AuthorPool();
 
       Iterable<RevCommit> commits;
       try {
@@ -32,10 +54,145 @@ public class GitRepoUtils {
       for (RevCommit commit : commits) {
          String name = commit.getAuthorIdent().getName();
          String email = commit.getAuthorIdent().getEmailAddress();
-         authors.add(new Author(name, email));
+         authors.add(pool.get(name, email));
       }
 
       return authors;
    }
 
+   /**
+    * Retrieves the distinct authors of all commits reachable from any ref of a
+    * git repository, like {@link #getAuthors}, but returns every identity only
+    * once, with its commit count and when it was first and last seen.
+    * <p>
+    * Only the author line of each commit is read. A commit body is dropped as
+    * soon as its author line was read, and an identity is only decoded the first
+    * time it is seen, so the memory used by the scan grows with the number of
+    * distinct authors rather than with the number of commits.
+    *
+    * @param git the git repository on the local filesystem
+    * @return the distinct authors, in the order they are first found when walking
+    *         the history from the newest commit to the oldest
+    * @throws IOException if the history cannot be read
+    */
+   public static List<AuthorSummary> scanAuthors(Git git) throws IOException {
+      return scanAuthors(git, null);
+   }
+
+   /**
+    * Retrieves the distinct authors of a git repository like
+    * {@link #scanAuthors(Git)}, but resolves every identity to its canonical
+    * author first, the way <code>git shortlog</code> applies a mailmap. The
+    * identities that resolve to the same author share one summary. Every
+    * distinct identity is only resolved once.
+    *
+    * @param git     the git repository on the local filesystem
+    * @param mailmap the mailmap to resolve the identities with, or null to keep
+    *                them as they were recorded
+    * @return the distinct canonical authors, in the order they are first found
+    *         when walking the history from the newest commit to the oldest
+    * @throws IOException if the history cannot be read
+    */
+   public static List<AuthorSummary> scanAuthors(Git git, MailMapIndex mailmap)
+         throws IOException {
+      Map<Author, AuthorSummary> byAuthor = new LinkedHashMap<>();
+      try (RevWalk revWalk = new RevWalk(git.getRepository())) {
+         for (ObjectId tip : getRefTips(git.getRepository(), revWalk)) {
+            revWalk.markStart(revWalk.parseCommit(tip));
+         }
+         scanAuthors(revWalk, mailmap, byAuthor, author -> {
+         }, NullProgressMonitor.INSTANCE);
+      }
+      return new ArrayList<>(byAuthor.values());
+   }
+
+   /**
+    * Returns the commits all refs of a repository point to, with annotated tags
+    * peeled. Refs to other objects than commits are left out.
+    *
+    * @param repository the repository to read
+    * @param revWalk    the walk to parse the ref targets with
+    * @return the distinct commits the refs point to
+    * @throws IOException if the refs cannot be read
+    */
+   static Set<ObjectId> getRefTips(Repository repository, RevWalk revWalk) throws IOException {
+      Set<ObjectId> tips = new LinkedHashSet<>();
+      for (Ref ref : repository.getRefDatabase().getRefs()) {
+         if (ref.getObjectId() == null) {
+            continue;
+         }
+         RevObject object = revWalk.peel(revWalk.parseAny(ref.getObjectId()));
+         if (object instanceof RevCommit) {
+            tips.add(object.copy());
+         }
+      }
+      return tips;
+   }
+
+   /**
+    * Adds the authors of the commits of a walk to their summaries.
+    *
+    * @param revWalk    the walk, whose start commits are marked
+    * @param mailmap    resolves the identities to their canonical authors, or
+    *                   null to keep them as they were recorded
+    * @param byAuthor   the summaries of the authors seen so far, which new
+    *                   authors are added to in the order they are found
+    * @param newAuthors receives every author not in the summaries yet, as soon as
+    *                   it is found
+    * @param monitor    is updated with the number of walked commits and can
+    *                   cancel the scan
+    * @return the number of commits walked
+    * @throws IOException           if the history cannot be read
+    * @throws CancellationException if the monitor cancelled the scan
+    */
+   static int scanAuthors(RevWalk revWalk, MailMapIndex mailmap,
+         Map<Author, AuthorSummary> byAuthor, Consumer<Author> newAuthors,
+         ProgressMonitor monitor) throws IOException {
+      monitor.beginTask("Scanning authors", ProgressMonitor.UNKNOWN);
+      // keyed by the raw "name <email>" bytes of the author line, so known
+      // identities are found without decoding them
+      Map<String, AuthorSummary> byRawIdentity = new HashMap<>();
+      int commitCount = 0;
+      RevCommit commit;
+      while ((commit = revWalk.next()) != null) {
+         commitCount++;
+         if (commitCount % PROGRESS_INTERVAL == 0) {
+            monitor.update(PROGRESS_INTERVAL);
+            if (monitor.isCancelled()) {
+               throw new CancellationException("Author scan cancelled");
+            }
+         }
+         byte[] raw = commit.getRawBuffer();
+         int start = RawParseUtils.author(raw, 0);
+         if (start < 0) {
+            commit.disposeBody();
+            continue;
+         }
+         int end = RawParseUtils.nextLF(raw, start, '>');
+         String rawIdentity = new String(raw, start, end - start, StandardCharsets.ISO_8859_1);
+         long authorTime = raw[end - 1] == '>' ? RawParseUtils.parseLongBase10(raw, end, null)
+               : 0;
+
+         AuthorSummary summary = byRawIdentity.get(rawIdentity);
+         if (summary == null) {
+            // an identity can be encoded differently in different commits
+            PersonIdent ident = commit.getAuthorIdent();
+            Author author = mailmap == null ? new Author(ident.getName(), ident.getEmailAddress())
+                  : mailmap.resolve(ident.getName(), ident.getEmailAddress());
+            summary = byAuthor.get(author);
+            if (summary == null) {
+               summary = new AuthorSummary(author, 0, authorTime, authorTime);
+               byAuthor.put(author, summary);
+               newAuthors.accept(author);
+            }
+            byRawIdentity.put(rawIdentity, summary);
+         }
+         summary.addCommit(authorTime);
+         commit.disposeBody();
+      }
+      monitor.update(commitCount % PROGRESS_INTERVAL);
+      monitor.endTask();
+      return commitCount;
+   }
+
 }
@@ -43,6 +43,7 @@ public class MailMapApp extends JFrame {
    private final Set<Author> unassignedAuthorsSet;
    private final JList<Author> unassignedAuthorsList;
    private final Set<Author> primaryAuthorSet;
+   private final AuthorPool authorPool;
    private final JTree mailmapTree;
 
    private JMenuBar menuBar;
@@ -74,6 +75,9 @@ public class MailMapApp extends JFrame {
       unassignedAuthorsList = new JList<>(new SortedListModel<>(authorComparator));
 
       primaryAuthorSet = new HashSet<>();
+      // the loaded authors are interned, so the sets and the editors moving
+      // authors between them compare authors by reference
+      authorPool = new AuthorPool();
 
       // Initializes a root node for the mailmap tree and a DefaultTreeModel to be
       // used by the JTree
@@ -124,15 +128,15 @@ public class MailMapApp extends JFrame {
    /**
     * Returns an ActionListener that when triggered, opens a JFileChooser to select
     * a directory containing a git repository. The authors in the repository are
-    * read by the GitRepoUtils.getAuthors() method and added to the unassigned
-    * authors list.
+    * read on a background thread through its AuthorIndex and added to the
+    * unassigned authors list as they are found.
     *
     * @return an ActionListener that when triggered, opens a JFileChooser to select
     *         a directory containing a git repository.
     */
    private ActionListener getMailMapGitRepoActionListener() {
       return new LoadGitRepoAuthors(unassignedAuthorsList, unassignedAuthorsSet, primaryAuthorSet,
-            this);
+            authorPool, this);
    }
 
    /**
@@ -144,7 +148,7 @@ public class MailMapApp extends JFrame {
     */
    private ActionListener getMailMapLoaderActionListener() {
       return new LoadMailMap(unassignedAuthorsList, unassignedAuthorsSet, getRoot(), mailmapTree,
-            getTreeModel(), primaryAuthorSet, this);
+            getTreeModel(), primaryAuthorSet, authorPool, this);
    }
 
    /**
@@ -1,11 +1,10 @@
 package my.git.mailmap;
 
-import java.io.BufferedReader;
 import java.io.BufferedWriter;
-import java.io.FileReader;
+import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
-import java.util.ArrayList;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -26,12 +25,105 @@ public class MailMapEntry {
     * The string should be in the format "Proper Name <Proper Email> Commit Name
     * <Commit Email>". The Proper Name, Commit Name and Commit Email are all
     * optional. The Proper Email should be in the format of an email address.
+    * Anything after a '#' is a comment.
+    * <p>
+    * The entry is parsed in a single pass over its characters, and only the
+    * names and emails of the result are allocated.
     * 
     * @param entry a string representing a mailmap entry.
     * @return a {@link MailMapEntry} object representing the parsed entry. Returns
     *         null if the entry is empty or malformed.
     */
    public static MailMapEntry parseEntry(String entry) {
+      int end = entry.indexOf('#');
+      if (end < 0) {
+         end = entry.length();
+      }
+
+      // the proper email is in the first pair of brackets that is not empty
+      int nameStart = skipWhitespace(entry, 0, end);
+      int emailStart = nameStart;
+      int emailEnd;
+      while (true) {
+         emailStart = indexOf(entry, '<', emailStart, end);
+         if (emailStart < 0) {
+            return null;
+         }
+         emailEnd = indexOf(entry, '>', emailStart + 1, end);
+         if (emailEnd < 0) {
+            return null;
+         }
+         if (emailEnd > emailStart + 1) {
+            break;
+         }
+         emailStart = emailEnd;
+      }
+      Author primaryAuthor = new Author(
+            entry.substring(nameStart, trimWhitespace(entry, nameStart, emailStart)),
+            entry.substring(emailStart + 1, emailEnd));
+
+      // the commit email, which may be empty, is in the next pair of brackets
+      Author secondaryAuthor = null;
+      int commitNameStart = skipWhitespace(entry, emailEnd + 1, end);
+      int commitEmailStart = indexOf(entry, '<', commitNameStart, end);
+      int commitEmailEnd = commitEmailStart < 0 ? -1
+            : indexOf(entry, '>', commitEmailStart + 1, end);
+      if (commitEmailEnd >= 0) {
+         secondaryAuthor = new Author(
+               entry.substring(commitNameStart,
+                     trimWhitespace(entry, commitNameStart, commitEmailStart)),
+               commitEmailEnd > commitEmailStart + 1
+                     ? entry.substring(commitEmailStart + 1, commitEmailEnd)
+                     : null);
+      }
+
+      return new MailMapEntry(primaryAuthor, secondaryAuthor);
+   }
+
+   private static int indexOf(String s, char c, int from, int end) {
+      for (int i = from; i < end; i++) {
+         if (s.charAt(i) == c) {
+            return i;
+         }
+      }
+      return -1;
+   }
+
+   /**
+    * The whitespace of a mailmap entry, which is the same as \s in a regular
+    * expression.
+    */
+   private static boolean isWhitespace(char c) {
+      return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+   }
+
+   private static int skipWhitespace(String s, int from, int end) {
+      while (from < end && isWhitespace(s.charAt(from))) {
+         from++;
+      }
+      return from;
+   }
+
+   /**
+    * @return the end of the text between start and end without its trailing
+    *         whitespace
+    */
+   private static int trimWhitespace(String s, int start, int end) {
+      while (end > start && isWhitespace(s.charAt(end - 1))) {
+         end--;
+      }
+      return end;
+   }
+
+   /**
+    * The regular expression based parser that {@link #parseEntry} replaced, kept
+    * as the reference the single pass parser is tested and benchmarked against.
+    *
+    * @param entry a string representing a mailmap entry.
+    * @return a {@link MailMapEntry} object representing the parsed entry. Returns
+    *         null if the entry is empty or malformed.
+    */
+   static MailMapEntry parseEntryWithRegex(String entry) {
       String beforeRemark = entry.split("#")[0];
 
       if (beforeRemark == null || beforeRemark.trim().isEmpty()) {
@@ -63,6 +155,8 @@ public class MailMapEntry {
 
    /**
     * Reads a mailmap file and returns a list of {@link MailMapEntry} objects.
+    * The file is decoded as UTF-8 and parsed in parallel, see
+    * {@link MailMapReader}.
     * 
     * @param fileName The name of the mailmap file to read.
     * @return a list of {@link MailMapEntry} objects representing the entries in
@@ -70,17 +164,7 @@ public class MailMapEntry {
     * @throws IOException if there is an error reading the file.
     */
    public static List<MailMapEntry> readMailMap(String fileName) throws IOException {
-      List<MailMapEntry> entries = new ArrayList<>();
-      try (BufferedReader reader = new BufferedReader(new FileReader(fileName))) {
-         String line;
-         while ((line = reader.readLine()) != null) {
-            MailMapEntry entry = MailMapEntry.parseEntry(line);
-            if (entry != null) {
-               entries.add(entry);
-            }
-         }
-      }
-      return entries;
+      return MailMapReader.read(new File(fileName));
    }
 
    /**
@@ -92,7 +176,8 @@ public class MailMapEntry {
     * @throws IOException if there is a problem writing the file
     */
    public static void writeMailMap(String fileName, List<MailMapEntry> entries) throws IOException {
-      try (BufferedWriter writer = new BufferedWriter(new FileWriter(fileName))) {
+      try (BufferedWriter writer = new BufferedWriter(
+            new FileWriter(fileName, StandardCharsets.UTF_8))) {
          for (MailMapEntry entry : entries) {
             writer.write(entry.toString());
             writer.newLine();
@@ -0,0 +1,122 @@
+package my.git.mailmap;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * The entries of a mailmap file indexed for resolving identities, the way git
+ * does: the entries are looked up by the commit email first and then by the
+ * commit name, so an entry that matches both the name and the email takes
+ * precedence over an entry that only matches the email. Names and emails are
+ * compared ignoring case and surrounding whitespace.
+ * <p>
+ * As in git, entries for the same commit identity are merged: a later entry
+ * replaces the proper name or email of an earlier one only if it gives one. For
+ * example "Proper Name &lt;commit@email&gt;" and "&lt;proper@email&gt;
+ * &lt;commit@email&gt;" together replace both the name and the email, in either
+ * order.
+ * <p>
+ * An index is never modified after it is created, so it can be shared between
+ * threads.
+ */
+public final class MailMapIndex {
+
+   /**
+    * The entries for one commit email.
+    */
+   private static final class EmailEntries {
+      /** The entry that matches the email with any name, or null. */
+      private Author any;
+      /** The entries that match the email with a name, by name. */
+      private Map<String, Author> byName;
+   }
+
+   private static String key(String value) {
+      return value == null ? "" : value.trim().toLowerCase(Locale.ROOT);
+   }
+
+   private static boolean isEmpty(String value) {
+      return value == null || value.trim().isEmpty();
+   }
+
+   /**
+    * @return the proper author of an earlier entry with its name and email
+    *         replaced by those that a later entry gives
+    */
+   private static Author merge(Author earlier, Author later) {
+      if (earlier == null) {
+         return later;
+      }
+      return new Author(isEmpty(later.getName()) ? earlier.getName() : later.getName(),
+            isEmpty(later.getEmail()) ? earlier.getEmail() : later.getEmail());
+   }
+
+   private final Map<String, EmailEntries> byEmail = new HashMap<>();
+
+   private final int size;
+
+   /**
+    * @param entries the mailmap entries, in the order of the file
+    */
+   public MailMapIndex(List<MailMapEntry> entries) {
+      for (MailMapEntry entry : entries) {
+         Author proper = entry.getPrimary();
+         Author commit = entry.getSecondary();
+         if (commit == null) {
+            // "Proper Name <commit@email>" only replaces the name, the commit
+            // keeps its email as it was recorded
+            EmailEntries emailEntries = byEmail.computeIfAbsent(proper.getEmailKey(),
+                  key -> new EmailEntries());
+            emailEntries.any = merge(emailEntries.any, new Author(proper.getName(), null));
+            continue;
+         }
+         EmailEntries emailEntries = byEmail.computeIfAbsent(commit.getEmailKey(),
+               key -> new EmailEntries());
+         if (isEmpty(commit.getName())) {
+            emailEntries.any = merge(emailEntries.any, proper);
+         } else {
+            if (emailEntries.byName == null) {
+               emailEntries.byName = new HashMap<>();
+            }
+            emailEntries.byName.merge(key(commit.getName()), proper, MailMapIndex::merge);
+         }
+      }
+      size = entries.size();
+   }
+
+   /**
+    * @return the number of entries the index was created from
+    */
+   public int size() {
+      return size;
+   }
+
+   /**
+    * Resolves an identity to its canonical author. The name and email of the
+    * matching mailmap entry replace the given ones, unless the entry leaves them
+    * empty.
+    *
+    * @param name  the name recorded in the history
+    * @param email the email recorded in the history
+    * @return the canonical author, or an author with the given name and email if
+    *         no mailmap entry matches
+    */
+   public Author resolve(String name, String email) {
+      EmailEntries emailEntries = byEmail.get(key(email));
+      if (emailEntries == null) {
+         return new Author(name, email);
+      }
+      Author proper = emailEntries.byName == null ? null : emailEntries.byName.get(key(name));
+      if (proper == null) {
+         proper = emailEntries.any;
+      }
+      if (proper == null) {
+         return new Author(name, email);
+      }
+      return new Author(isEmpty(proper.getName()) ? name : proper.getName(),
+            isEmpty(proper.getEmail()) ? email : proper.getEmail());
+   }
+
+}
@@ -0,0 +1,165 @@
+package my.git.mailmap;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Reads mailmap files that are too large to parse line by line. The file is
+ * memory mapped, or read into memory if it is small, and split into chunks that
+ * end at a newline, the chunks are decoded as UTF-8 and parsed on a
+ * {@link ForkJoinPool}, and their entries are put back together in the order of
+ * the file. A newline byte never occurs inside a multi-byte UTF-8 character, so
+ * the chunks are found without decoding the file.
+ * <p>
+ * Lines end with "\n" or "\r\n", and a byte order mark at the start of the file
+ * is skipped.
+ */
+public class MailMapReader {
+
+   /** Files up to this size are parsed on the calling thread. */
+   private static final int MIN_CHUNK_SIZE = 1 << 20;
+
+   /**
+    * Files up to this size are read into memory rather than mapped, which is
+    * cheaper for small files and does not keep them locked on Windows.
+    */
+   private static final int MAX_READ_SIZE = 1 << 20;
+
+   /** More chunks than threads, so that threads which finish early can help. */
+   private static final int CHUNKS_PER_THREAD = 4;
+
+   /**
+    * Reads a mailmap file with one thread per available processor.
+    *
+    * @param file the mailmap file
+    * @return the entries of the file, in the order of the file
+    * @throws IOException if the file cannot be read
+    */
+   public static List<MailMapEntry> read(File file) throws IOException {
+      return read(file, 0);
+   }
+
+   /**
+    * Reads a mailmap file.
+    *
+    * @param file    the mailmap file
+    * @param threads the number of threads to parse the file on, or 0 for one per
+    *                available processor
+    * @return the entries of the file, in the order of the file
+    * @throws IOException if the file cannot be read
+    */
+   public static List<MailMapEntry> read(File file, int threads) throws IOException {
+      int parallelism = threads == 0 ? Runtime.getRuntime().availableProcessors() : threads;
+      if (parallelism < 1) {
+         throw new IllegalArgumentException("threads must not be negative: " + threads);
+      }
+      long chunkSize = Math.max(MIN_CHUNK_SIZE,
+            file.length() / ((long) parallelism * CHUNKS_PER_THREAD) + 1);
+      return read(file, parallelism, (int) Math.min(chunkSize, Integer.MAX_VALUE));
+   }
+
+   static List<MailMapEntry> read(File file, int parallelism, int chunkSize)
+         throws IOException {
+      ByteBuffer buffer;
+      if (file.length() <= MAX_READ_SIZE) {
+         buffer = ByteBuffer.wrap(Files.readAllBytes(file.toPath()));
+      } else {
+         try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+               throw new IOException(file + " is too large to be mapped");
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+         }
+      }
+
+      int size = buffer.limit();
+      int start = hasByteOrderMark(buffer) ? 3 : 0;
+      if (parallelism == 1 || size - start <= chunkSize) {
+         return parseChunk(buffer, start, size);
+      }
+
+      ForkJoinPool pool = new ForkJoinPool(parallelism);
+      try {
+         List<Future<List<MailMapEntry>>> chunks = new ArrayList<>();
+         int chunkStart = start;
+         while (chunkStart < size) {
+            int chunkEnd = nextLine(buffer, (int) Math.min(size, (long) chunkStart + chunkSize));
+            int from = chunkStart;
+            chunks.add(pool.submit(() -> parseChunk(buffer, from, chunkEnd)));
+            chunkStart = chunkEnd;
+         }
+
+         List<MailMapEntry> entries = new ArrayList<>();
+         for (Future<List<MailMapEntry>> chunk : chunks) {
+            entries.addAll(chunk.get());
+         }
+         return entries;
+      } catch (InterruptedException e) {
+         Thread.currentThread().interrupt();
+         throw new IOException("Interrupted while reading " + file, e);
+      } catch (ExecutionException e) {
+         throw new IllegalStateException(e.getCause());
+      } finally {
+         pool.shutdownNow();
+      }
+   }
+
+   private static boolean hasByteOrderMark(ByteBuffer buffer) {
+      return buffer.limit() >= 3 && buffer.get(0) == (byte) 0xef && buffer.get(1) == (byte) 0xbb
+            && buffer.get(2) == (byte) 0xbf;
+   }
+
+   /**
+    * @return the start of the first line that starts at or after a position
+    */
+   private static int nextLine(ByteBuffer buffer, int position) {
+      int i = position - 1;
+      while (i < buffer.limit() && buffer.get(i) != '\n') {
+         i++;
+      }
+      return Math.min(i + 1, buffer.limit());
+   }
+
+   /**
+    * Parses the lines between two positions. Only absolute gets are used, so
+    * the chunks of a buffer can be parsed concurrently.
+    */
+   private static List<MailMapEntry> parseChunk(ByteBuffer buffer, int start, int end) {
+      List<MailMapEntry> entries = new ArrayList<>();
+      byte[] line = new byte[256];
+      int lineStart = start;
+      while (lineStart < end) {
+         int lineEnd = lineStart;
+         while (lineEnd < end && buffer.get(lineEnd) != '\n') {
+            lineEnd++;
+         }
+         int length = lineEnd - lineStart;
+         if (length > 0 && buffer.get(lineEnd - 1) == '\r') {
+            length--;
+         }
+         if (length > line.length) {
+            line = Arrays.copyOf(line, Math.max(length, line.length * 2));
+         }
+         buffer.get(lineStart, line, 0, length);
+         MailMapEntry entry = MailMapEntry.parseEntry(
+               new String(line, 0, length, StandardCharsets.UTF_8));
+         if (entry != null) {
+            entries.add(entry);
+         }
+         lineStart = lineEnd + 1;
+      }
+      return entries;
+   }
+
+}
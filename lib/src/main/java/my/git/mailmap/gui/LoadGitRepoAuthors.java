@@ -1,41 +1,161 @@
 package my.git.mailmap.gui;
 
+import java.awt.BorderLayout;
+import java.awt.Component;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import javax.swing.BorderFactory;
+import javax.swing.JButton;
+import javax.swing.JDialog;
 import javax.swing.JFileChooser;
 import javax.swing.JFrame;
 import javax.swing.JList;
 import javax.swing.JOptionPane;
+import javax.swing.JProgressBar;
+import javax.swing.SwingWorker;
+import javax.swing.Timer;
+import javax.swing.WindowConstants;
 
 import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.EmptyProgressMonitor;
 
 import my.git.mailmap.Author;
-import my.git.mailmap.GitRepoUtils;
+import my.git.mailmap.AuthorIndex;
+import my.git.mailmap.AuthorPool;
 
 public class LoadGitRepoAuthors implements ActionListener {
 
+   /**
+    * Scans the authors of a repository on a background thread. The authors are
+    * published to the event dispatch thread as they are found; Swing coalesces
+    * the authors published between two runs of {@link #process} into one batch,
+    * which is added to the list model at once.
+    */
+   private class AuthorLoader extends SwingWorker<Void, Author> {
+
+      private final File repositoryDir;
+      private final Runnable finished;
+      private final AtomicInteger commitCount = new AtomicInteger();
+
+      private JDialog dialog;
+      private Timer progressTimer;
+
+      AuthorLoader(File repositoryDir, Runnable finished) {
+         this.repositoryDir = repositoryDir;
+         this.finished = finished;
+      }
+
+      @Override
+      protected Void doInBackground() throws IOException {
+         try (Git git = Git.open(repositoryDir)) {
+            // the AuthorIndex of the repository only walks the commits added
+            // since the repository was last loaded
+            AuthorIndex.update(git, AuthorIndex.getDefaultFile(git.getRepository()),
+                  this::publish, new EmptyProgressMonitor() {
+                     @Override
+                     public boolean isCancelled() {
+                        return AuthorLoader.this.isCancelled();
+                     }
+
+                     @Override
+                     public void update(int completed) {
+                        commitCount.addAndGet(completed);
+                     }
+                  });
+         }
+         return null;
+      }
+
+      @Override
+      protected void done() {
+         progressTimer.stop();
+         dialog.dispose();
+         finished.run();
+         try {
+            get();
+         } catch (CancellationException | InterruptedException ex) {
+            // the authors found so far stay in the list
+         } catch (ExecutionException ex) {
+            JOptionPane.showMessageDialog(parent, "Error reading git repo.");
+         }
+      }
+
+      @Override
+      protected void process(List<Author> authors) {
+         // check for duplicate authors in the primary model and unassigned model
+         List<Author> newAuthors = new ArrayList<>(authors.size());
+         for (Author published : authors) {
+            Author author = authorPool.intern(published);
+            if (!primaryAuthorSet.contains(author) && unassignedAuthorsSet.add(author)) {
+               newAuthors.add(author);
+            }
+         }
+         ((SortedListModel<Author>) unassignedAuthorsList.getModel()).addAll(newAuthors);
+      }
+
+      /**
+       * Shows a non-modal dialog with the progress of the loading and a button to
+       * cancel it, then starts the loading.
+       */
+      void start() {
+         JProgressBar progressBar = new JProgressBar();
+         progressBar.setIndeterminate(true);
+         progressBar.setStringPainted(true);
+         progressBar.setString("Scanning commits...");
+         JButton cancelButton = new JButton("Cancel");
+         cancelButton.addActionListener(event -> cancel(false));
+
+         dialog = new JDialog(parent, "Loading " + repositoryDir.getName());
+         dialog.setDefaultCloseOperation(WindowConstants.DO_NOTHING_ON_CLOSE);
+         dialog.getRootPane().setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
+         dialog.add(progressBar, BorderLayout.CENTER);
+         dialog.add(cancelButton, BorderLayout.SOUTH);
+         dialog.pack();
+         dialog.setLocationRelativeTo(parent);
+
+         // the scan does not know how many commits there are, so the progress is
+         // shown as the number of commits scanned so far
+         progressTimer = new Timer(PROGRESS_DELAY,
+               event -> progressBar.setString(String.format("%,d commits, %,d authors",
+                     commitCount.get(), unassignedAuthorsSet.size())));
+         progressTimer.start();
+         dialog.setVisible(true);
+         execute();
+      }
+   }
+
+   /** The milliseconds between two updates of the progress dialog. */
+   private static final int PROGRESS_DELAY = 250;
+
    private JList<Author> unassignedAuthorsList;
    private Set<Author> unassignedAuthorsSet;
 
    private Set<Author> primaryAuthorSet;
 
+   private AuthorPool authorPool;
+
    private JFrame parent;
 
    LoadGitRepoAuthors(JList<Author> unassignedAuthorsList, Set<Author> unassignedAuthorsSet,
          Set<Author> primaryAuthorSet) {
-      this(unassignedAuthorsList, unassignedAuthorsSet, primaryAuthorSet, null);
+      this(unassignedAuthorsList, unassignedAuthorsSet, primaryAuthorSet, new AuthorPool(), null);
    }
 
    public LoadGitRepoAuthors(JList<Author> unassignedAuthorsList, Set<Author> unassignedAuthorsSet,
-         Set<Author> primaryAuthorSet, JFrame parent) {
+         Set<Author> primaryAuthorSet, AuthorPool authorPool, JFrame parent) {
       this.unassignedAuthorsList = unassignedAuthorsList;
       this.unassignedAuthorsSet = unassignedAuthorsSet;
       this.primaryAuthorSet = primaryAuthorSet;
+      this.authorPool = authorPool;
       this.parent = parent;
    }
 
@@ -45,24 +165,17 @@ public class LoadGitRepoAuthors implements ActionListener {
       fileChooser.setFileSelectionMode(JFileChooser.DIRECTORIES_ONLY);
       int returnVal = fileChooser.showOpenDialog(parent);
       if (returnVal == JFileChooser.APPROVE_OPTION) {
-         try {
-            // Use the GitRepoUtils.getAuthors() method to read the selected file
-            List<Author> authors = GitRepoUtils
-                  .getAuthors(Git.open(new File(fileChooser.getSelectedFile().getAbsolutePath())));
-            // get the models for the two lists of items
-            SortedListModel<Author> unassignedModel = (SortedListModel<Author>) (unassignedAuthorsList
-                  .getModel());
-
-            // check for duplicate authors in the primary model and unassigned model
-            for (Author author : authors) {
-               if (!primaryAuthorSet.contains(author) && !unassignedAuthorsSet.contains(author)) {
-                  unassignedModel.addElement(author);
-                  unassignedAuthorsSet.add(author);
-               }
-            }
-         } catch (IOException ex) {
-            JOptionPane.showMessageDialog(parent, "Error reading git repo.");
+         // the repository is scanned on a background thread, so the window stays
+         // responsive; the menu item stays disabled until the scan is done
+         Component source = e.getSource() instanceof Component ? (Component) e.getSource() : null;
+         if (source != null) {
+            source.setEnabled(false);
          }
+         new AuthorLoader(new File(fileChooser.getSelectedFile().getAbsolutePath()), () -> {
+            if (source != null) {
+               source.setEnabled(true);
+            }
+         }).start();
       }
    }
 
@@ -19,6 +19,7 @@ import javax.swing.tree.TreeNode;
 import javax.swing.tree.TreePath;
 
 import my.git.mailmap.Author;
+import my.git.mailmap.AuthorPool;
 import my.git.mailmap.MailMapAuthor;
 import my.git.mailmap.MailMapEntry;
 
@@ -32,24 +33,27 @@ public class LoadMailMap implements ActionListener {
    private DefaultTreeModel treeModel;
    private Set<Author> primaryAuthorSet;
 
+   private AuthorPool authorPool;
+
    private JFrame parent;
 
    LoadMailMap(JList<Author> unassignedAuthorsList, Set<Author> unassignedAuthorsSet,
          MailMapAuthorTreeRoot root, JTree mailmapTree, DefaultTreeModel treeModel,
          Set<Author> primaryAuthorSet) {
       this(unassignedAuthorsList, unassignedAuthorsSet, root, mailmapTree, treeModel,
-            primaryAuthorSet, null);
+            primaryAuthorSet, new AuthorPool(), null);
    }
 
    public LoadMailMap(JList<Author> unassignedAuthorsList, Set<Author> unassignedAuthorsSet,
          MailMapAuthorTreeRoot root, JTree mailmapTree, DefaultTreeModel treeModel,
-         Set<Author> primaryAuthorSet, JFrame parent) {
+         Set<Author> primaryAuthorSet, AuthorPool authorPool, JFrame parent) {
       this.unassignedAuthorsList = unassignedAuthorsList;
       this.unassignedAuthorsSet = unassignedAuthorsSet;
       this.root = root;
       this.mailmapTree = mailmapTree;
       this.treeModel = treeModel;
       this.primaryAuthorSet = primaryAuthorSet;
+      this.authorPool = authorPool;
       this.parent = parent;
    }
 
@@ -77,25 +81,28 @@ public class LoadMailMap implements ActionListener {
             // Iterate through the mailMapEntries list and add the primary authors to the
             // primaryAuthorsList and the alternative authors to the unassignedAuthorsList
             for (MailMapEntry entry : mailMapEntries) {
+               Author primary = entry.getPrimary() == null ? null
+                     : authorPool.intern(entry.getPrimary());
+               Author secondary = entry.getSecondary() == null ? null
+                     : authorPool.intern(entry.getSecondary());
                MailMapAuthorTreeNode treeNode = null;
-               if (entry.getPrimary() != null) {
-                  if (primaryAuthorSet.contains(entry.getPrimary())) {
-                     if (entry.getSecondary() != null) {
-                        treeNode = find(entry.getPrimary());
+               if (primary != null) {
+                  if (primaryAuthorSet.contains(primary)) {
+                     if (secondary != null) {
+                        treeNode = find(primary);
                      }
                   } else {
-                     treeNode = new MailMapAuthorTreeNode(new MailMapAuthor(entry.getPrimary()),
-                           root);
-                     primaryAuthorSet.add(entry.getPrimary());
+                     treeNode = new MailMapAuthorTreeNode(new MailMapAuthor(primary), root);
+                     primaryAuthorSet.add(primary);
                      treeModel.insertNodeInto(treeNode, root, root.getChildCount());
                      treeModel.nodesChanged(root,
                            IntStream.range(0, root.getChildCount()).toArray());
                   }
 
                }
-               if (entry.getSecondary() != null) {
-                  treeNode.getMailMapAuthor().addAlternativeAuthor(entry.getSecondary());
-                  treeModel.insertNodeInto(new AuthorTreeNode(entry.getSecondary(), treeNode),
+               if (secondary != null) {
+                  treeNode.getMailMapAuthor().addAlternativeAuthor(secondary);
+                  treeModel.insertNodeInto(new AuthorTreeNode(secondary, treeNode),
                         treeNode, treeNode.getChildCount());
                   treeModel.nodesChanged(treeNode,
                         IntStream.range(0, treeNode.getChildCount()).toArray());
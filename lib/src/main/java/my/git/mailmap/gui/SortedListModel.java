@@ -1,6 +1,7 @@
 package my.git.mailmap.gui;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Comparator;
 import java.util.List;
 
@@ -25,6 +26,22 @@ public class SortedListModel<E> extends AbstractListModel<E> {
       fireContentsChanged(this, 0, size() - 1);
    }
 
+   /**
+    * Adds several elements with a single sort and a single change event, which
+    * is much cheaper than adding them one by one to a long list.
+    *
+    * @param elements the elements to add
+    */
+   public void addAll(Collection<? extends E> elements) {
+      if (elements.isEmpty()) {
+         return;
+      }
+      collection.addAll(elements);
+      collection.sort(comparator);
+
+      fireContentsChanged(this, 0, size() - 1);
+   }
+
    public void clear() {
       collection.clear();
       fireContentsChanged(this, 0, 0);
@@ -0,0 +1,241 @@
+package my.git.stats;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The number of lines per author of a single file, stored as parallel arrays of
+ * author ids and line counts. A file usually has only a handful of authors, so
+ * this is much smaller than a map and adding a line is a short scan without any
+ * boxing.
+ * <p>
+ * Lines added with an age bucket are also counted per author and
+ * {@link LineAges age bucket}. Lines added with the time of their commit keep
+ * that time as well, so saved results, such as those of the blame cache, can be
+ * put into the buckets of another reference time when they are read back.
+ */
+class AuthorCounts {
+
+   private int[] ids;
+   private int[] lines;
+   /** The lines of each author per age bucket, or null if no ages were added. */
+   private int[] ages;
+   private int size;
+
+   /**
+    * The commit times of the lines added with one, as (index, time, count)
+    * triples, or null if none were added.
+    */
+   private int[] dated;
+   private int datedSize;
+
+   /** The index of the author lines were last added to. */
+   private int last;
+
+   AuthorCounts() {
+      this(4);
+   }
+
+   AuthorCounts(int capacity) {
+      ids = new int[Math.max(capacity, 1)];
+      lines = new int[ids.length];
+   }
+
+   /**
+    * Adds lines to an author.
+    *
+    * @param id    the author id
+    * @param count the number of lines to add
+    */
+   void add(int id, int count) {
+      int index = indexOf(id);
+      lines[index] += count;
+   }
+
+   /**
+    * Adds lines of a known age to an author.
+    *
+    * @param id        the author id
+    * @param count     the number of lines to add
+    * @param ageBucket the age bucket of the lines, see {@link LineAges}
+    */
+   void add(int id, int count, int ageBucket) {
+      int index = indexOf(id);
+      lines[index] += count;
+      if (ages == null) {
+         ages = new int[ids.length * LineAges.BUCKET_COUNT];
+      }
+      ages[index * LineAges.BUCKET_COUNT + ageBucket] += count;
+   }
+
+   /**
+    * Adds lines last changed at a known time to an author, counted in the age
+    * bucket of that time.
+    *
+    * @param id            the author id
+    * @param count         the number of lines to add
+    * @param commitTime    the time of the commit the lines come from, in seconds
+    *                      since the epoch
+    * @param referenceTime the time ages are measured from, in seconds since the
+    *                      epoch
+    */
+   void add(int id, int count, int commitTime, long referenceTime) {
+      add(id, count, LineAges.bucketOf(commitTime, referenceTime));
+      int index = last;
+      if (datedSize > 0 && dated[datedSize - 3] == index && dated[datedSize - 2] == commitTime) {
+         dated[datedSize - 1] += count;
+         return;
+      }
+      if (dated == null) {
+         dated = new int[3 * 4];
+      } else if (datedSize == dated.length) {
+         dated = Arrays.copyOf(dated, datedSize * 2);
+      }
+      dated[datedSize++] = index;
+      dated[datedSize++] = commitTime;
+      dated[datedSize++] = count;
+   }
+
+   /**
+    * Adds saved lines to an author, putting the lines with a commit time into
+    * the age buckets of a reference time.
+    *
+    * @param id            the author id
+    * @param count         the number of lines to add
+    * @param commitTimes   the commit times of the lines, as returned by
+    *                      {@link #getCommitTimes}
+    * @param referenceTime the time ages are measured from, in seconds since the
+    *                      epoch
+    */
+   void add(int id, int count, int[] commitTimes, long referenceTime) {
+      for (int i = 0; i < commitTimes.length; i += 2) {
+         add(id, commitTimes[i + 1], commitTimes[i], referenceTime);
+         count -= commitTimes[i + 1];
+      }
+      if (count > 0) {
+         add(id, count);
+      }
+   }
+
+   /**
+    * @param index an index from 0 to {@link #size()}
+    * @return the commit times of the lines of the author at the index that were
+    *         added with one, as alternating times and line counts, oldest first
+    */
+   int[] getCommitTimes(int index) {
+      TreeMap<Integer, Integer> times = new TreeMap<>();
+      for (int i = 0; i < datedSize; i += 3) {
+         if (dated[i] == index) {
+            times.merge(dated[i + 1], dated[i + 2], Integer::sum);
+         }
+      }
+      int[] commitTimes = new int[times.size() * 2];
+      int i = 0;
+      for (Map.Entry<Integer, Integer> time : times.entrySet()) {
+         commitTimes[i++] = time.getKey();
+         commitTimes[i++] = time.getValue();
+      }
+      return commitTimes;
+   }
+
+   /**
+    * Adds the lines of every author per age bucket to an array of totals,
+    * indexed by author id times {@link LineAges#BUCKET_COUNT} plus the bucket.
+    *
+    * @param ageTotals the totals, which must be long enough for the largest
+    *                  author id
+    */
+   void addAgesTo(long[] ageTotals) {
+      if (ages == null) {
+         return;
+      }
+      for (int i = 0; i < size; i++) {
+         int from = i * LineAges.BUCKET_COUNT;
+         int to = ids[i] * LineAges.BUCKET_COUNT;
+         for (int bucket = 0; bucket < LineAges.BUCKET_COUNT; bucket++) {
+            ageTotals[to + bucket] += ages[from + bucket];
+         }
+      }
+   }
+
+   /**
+    * Adds the lines of every author to an array of totals indexed by author id.
+    *
+    * @param totals the totals, which must be longer than the largest author id
+    */
+   void addTo(long[] totals) {
+      for (int i = 0; i < size; i++) {
+         totals[ids[i]] += lines[i];
+      }
+   }
+
+   /**
+    * @param index  an index from 0 to {@link #size()}
+    * @param bucket an age bucket
+    * @return the number of lines of the author at the index in the age bucket
+    */
+   int getAgeLines(int index, int bucket) {
+      return ages == null ? 0 : ages[index * LineAges.BUCKET_COUNT + bucket];
+   }
+
+   /**
+    * @param index an index from 0 to {@link #size()}
+    * @return the author id at the index
+    */
+   int getId(int index) {
+      return ids[index];
+   }
+
+   /**
+    * @param index an index from 0 to {@link #size()}
+    * @return the number of lines of the author at the index
+    */
+   int getLines(int index) {
+      return lines[index];
+   }
+
+   /**
+    * Returns the index of an author, adding the author if it has no lines yet.
+    */
+   private int indexOf(int id) {
+      if (size > 0 && ids[last] == id) {
+         return last;
+      }
+      for (int i = 0; i < size; i++) {
+         if (ids[i] == id) {
+            last = i;
+            return i;
+         }
+      }
+      if (size == ids.length) {
+         ids = Arrays.copyOf(ids, size * 2);
+         lines = Arrays.copyOf(lines, size * 2);
+         if (ages != null) {
+            ages = Arrays.copyOf(ages, size * 2 * LineAges.BUCKET_COUNT);
+         }
+      }
+      ids[size] = id;
+      last = size++;
+      return last;
+   }
+
+   /**
+    * @return the number of authors with lines in the file
+    */
+   int size() {
+      return size;
+   }
+
+   /**
+    * @return the total number of lines of all authors
+    */
+   long total() {
+      long total = 0;
+      for (int i = 0; i < size; i++) {
+         total += lines[i];
+      }
+      return total;
+   }
+
+}
@@ -0,0 +1,64 @@
+package my.git.stats;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Interns author names to dense int ids, so per-file line counts can be kept in
+ * primitive arrays indexed by author instead of in maps keyed by name. Looking
+ * up a name that was interned before does not lock, so the ids can be shared by
+ * all blame threads of a run.
+ */
+class AuthorIds {
+
+   private final ConcurrentHashMap<String, Integer> ids = new ConcurrentHashMap<>();
+
+   private volatile String[] names = new String[16];
+   private int size;
+
+   /**
+    * Returns the name of an author id.
+    *
+    * @param id an id returned by {@link #intern}
+    * @return the name of the author
+    */
+   String getName(int id) {
+      return names[id];
+   }
+
+   /**
+    * Returns the id of an author name, assigning the next free id if the name
+    * has not been seen before.
+    *
+    * @param name the author name
+    * @return the id of the name
+    */
+   int intern(String name) {
+      Integer id = ids.get(name);
+      if (id != null) {
+         return id;
+      }
+      synchronized (this) {
+         id = ids.get(name);
+         if (id == null) {
+            if (size == names.length) {
+               names = Arrays.copyOf(names, size * 2);
+            }
+            names[size] = name;
+            id = size++;
+            // publishing the id after the name, so any thread that sees the id
+            // also sees its name
+            ids.put(name, id);
+         }
+         return id;
+      }
+   }
+
+   /**
+    * @return the number of interned names, which is one more than the largest id
+    */
+   int size() {
+      return ids.size();
+   }
+
+}
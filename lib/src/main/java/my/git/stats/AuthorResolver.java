@@ -0,0 +1,80 @@
+package my.git.stats;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectInserter;
+
+import my.git.mailmap.Author;
+import my.git.mailmap.MailMapEntry;
+import my.git.mailmap.MailMapIndex;
+
+/**
+ * Resolves the identities found in the history to their canonical
+ * {@link Author} using the entries of a mailmap file. The entries are indexed
+ * into a {@link MailMapIndex} when the resolver is created, so resolving an
+ * identity costs one or two hash lookups.
+ * <p>
+ * A resolver is never modified after it is created, so it can be shared between
+ * threads.
+ */
+public class AuthorResolver {
+
+   /**
+    * Reads a mailmap file and indexes its entries.
+    *
+    * @param mailmap the mailmap file
+    * @return the resolver for the entries in the file
+    * @throws IOException if the file cannot be read
+    */
+   public static AuthorResolver load(File mailmap) throws IOException {
+      return new AuthorResolver(MailMapEntry.readMailMap(mailmap.getPath()));
+   }
+
+   private final MailMapIndex index;
+   private final String fingerprint;
+
+   /**
+    * @param entries the mailmap entries to resolve identities with
+    */
+   public AuthorResolver(List<MailMapEntry> entries) {
+      StringBuilder content = new StringBuilder();
+      for (MailMapEntry entry : entries) {
+         content.append(entry).append('\n');
+      }
+      index = new MailMapIndex(entries);
+      // the SHA-1 of the entries, which unlike a 32-bit hash does not collide in practice
+      try (ObjectInserter.Formatter formatter = new ObjectInserter.Formatter()) {
+         fingerprint = formatter.idFor(Constants.OBJ_BLOB,
+               content.toString().getBytes(StandardCharsets.UTF_8)).name();
+      }
+   }
+
+   /**
+    * Returns a digest of the mailmap entries, so results computed with
+    * different mailmaps can be told apart.
+    *
+    * @return the fingerprint of the mailmap entries
+    */
+   public String getFingerprint() {
+      return fingerprint;
+   }
+
+   /**
+    * Resolves an identity to its canonical author. The name and email of the
+    * matching mailmap entry replace the given ones, unless the entry leaves them
+    * empty.
+    *
+    * @param name  the name recorded in the history
+    * @param email the email recorded in the history
+    * @return the canonical author, or an author with the given name and email if
+    *         no mailmap entry matches
+    */
+   public Author resolve(String name, String email) {
+      return index.resolve(name, email);
+   }
+
+}
@@ -0,0 +1,301 @@
+package my.git.stats;
+
+import java.io.IOException;
+import java.time.DayOfWeek;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import org.eclipse.jgit.diff.DiffEntry;
+import org.eclipse.jgit.diff.DiffFormatter;
+import org.eclipse.jgit.diff.Edit;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.util.io.DisabledOutputStream;
+
+/**
+ * The churn of every author per week or month: the number of commits and the
+ * lines added and removed, as reported by {@code git log --numstat}.
+ * <p>
+ * The history is walked once on the calling thread, which resolves the author
+ * of every commit, and the diffs of the commits against their first parent are
+ * computed in batches on a {@link ForkJoinPool}. Every batch counts into its own
+ * totals, which are only combined once all batches are done. As with git log,
+ * merge commits are counted as commits but their changes are not, renames are
+ * detected and binary files count no lines. Periods are in UTC and are taken
+ * from the author time of the commit.
+ */
+public class AuthorStats {
+
+   /**
+    * The periods the churn can be counted per.
+    */
+   public enum Period {
+      /** ISO weeks, which start on Monday. */
+      WEEK,
+      /** Calendar months. */
+      MONTH;
+
+      /**
+       * @param epochSecond a time in seconds since the epoch
+       * @return the first day of the period the time falls in
+       */
+      public LocalDate startOf(long epochSecond) {
+         LocalDate day = LocalDate.ofInstant(Instant.ofEpochSecond(epochSecond), ZoneOffset.UTC);
+         return this == WEEK ? day.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY))
+               : day.withDayOfMonth(1);
+      }
+   }
+
+   /**
+    * The churn of one author in one period.
+    */
+   public static class Row {
+      private final String author;
+      private final LocalDate periodStart;
+      private final int commits;
+      private final long linesAdded;
+      private final long linesRemoved;
+
+      Row(String author, LocalDate periodStart, int commits, long linesAdded,
+            long linesRemoved) {
+         this.author = author;
+         this.periodStart = periodStart;
+         this.commits = commits;
+         this.linesAdded = linesAdded;
+         this.linesRemoved = linesRemoved;
+      }
+
+      public String getAuthor() {
+         return author;
+      }
+
+      public int getCommits() {
+         return commits;
+      }
+
+      public long getLinesAdded() {
+         return linesAdded;
+      }
+
+      public long getLinesRemoved() {
+         return linesRemoved;
+      }
+
+      /**
+       * @return the first day of the period
+       */
+      public LocalDate getPeriodStart() {
+         return periodStart;
+      }
+
+      @Override
+      public String toString() {
+         return author + " " + periodStart + ": " + commits + " commits, +" + linesAdded + " -"
+               + linesRemoved;
+      }
+   }
+
+   /**
+    * A commit to diff, reduced to what the diff and the totals need.
+    */
+   private static final class CommitDiff {
+      final ObjectId parentTree;
+      final ObjectId tree;
+      final long key;
+
+      CommitDiff(ObjectId parentTree, ObjectId tree, long key) {
+         this.parentTree = parentTree;
+         this.tree = tree;
+         this.key = key;
+      }
+   }
+
+   /** The number of commits diffed by one task. */
+   private static final int BATCH_SIZE = 64;
+
+   private static final int COMMITS = 0;
+   private static final int ADDED = 1;
+   private static final int REMOVED = 2;
+
+   /**
+    * Counts the churn of every author in the history of a commit.
+    *
+    * @param repository  the repository to read
+    * @param startCommit the commit whose history is counted
+    * @param period      the periods to count per
+    * @param authors     resolves identities to canonical authors, or null to
+    *                    count by the recorded author name
+    * @param threads     the number of threads to compute the diffs on, or 0 for
+    *                    one per available processor
+    * @return the churn per author and period
+    * @throws IOException if the history cannot be read
+    */
+   public static AuthorStats compute(Repository repository, ObjectId startCommit, Period period,
+         AuthorResolver authors, int threads) throws IOException {
+      int parallelism = threads == 0 ? Runtime.getRuntime().availableProcessors() : threads;
+      if (parallelism < 1) {
+         throw new IllegalArgumentException("threads must not be negative: " + threads);
+      }
+      AuthorIds authorIds = new AuthorIds();
+      List<LocalDate> periods = new ArrayList<>();
+      Map<LocalDate, Integer> periodIds = new HashMap<>();
+      // most authors commit many times, so each identity is only resolved once
+      Map<String, Integer> identityIds = new HashMap<>();
+
+      List<Future<Map<Long, long[]>>> batches = new ArrayList<>();
+      ForkJoinPool pool = new ForkJoinPool(parallelism);
+      try (RevWalk revWalk = new RevWalk(repository)) {
+         revWalk.markStart(revWalk.parseCommit(startCommit));
+         List<CommitDiff> batch = new ArrayList<>(BATCH_SIZE);
+         RevCommit commit;
+         while ((commit = revWalk.next()) != null) {
+            PersonIdent ident = commit.getAuthorIdent();
+            String identity = ident.getName() + '\0' + ident.getEmailAddress();
+            Integer authorId = identityIds.get(identity);
+            if (authorId == null) {
+               String name = authors == null ? ident.getName()
+                     : authors.resolve(ident.getName(), ident.getEmailAddress()).getName();
+               authorId = authorIds.intern(name);
+               identityIds.put(identity, authorId);
+            }
+            LocalDate periodStart = period.startOf(ident.getWhenAsInstant().getEpochSecond());
+            Integer periodId = periodIds.get(periodStart);
+            if (periodId == null) {
+               periodId = periods.size();
+               periods.add(periodStart);
+               periodIds.put(periodStart, periodId);
+            }
+            long key = (long) authorId << 32 | periodId;
+
+            if (commit.getParentCount() > 1) {
+               // merges only count as commits, as with git log --numstat
+               batch.add(new CommitDiff(null, null, key));
+            } else {
+               ObjectId parentTree = null;
+               if (commit.getParentCount() == 1) {
+                  RevCommit parent = commit.getParent(0);
+                  revWalk.parseHeaders(parent);
+                  parentTree = parent.getTree().copy();
+               }
+               batch.add(new CommitDiff(parentTree, commit.getTree().copy(), key));
+            }
+            commit.disposeBody();
+            if (batch.size() == BATCH_SIZE) {
+               batches.add(submit(pool, repository, batch));
+               batch = new ArrayList<>(BATCH_SIZE);
+            }
+         }
+         if (!batch.isEmpty()) {
+            batches.add(submit(pool, repository, batch));
+         }
+
+         Map<Long, long[]> totals = new HashMap<>();
+         for (Future<Map<Long, long[]>> future : batches) {
+            for (Map.Entry<Long, long[]> entry : future.get().entrySet()) {
+               long[] sums = totals.computeIfAbsent(entry.getKey(), key -> new long[3]);
+               for (int i = 0; i < sums.length; i++) {
+                  sums[i] += entry.getValue()[i];
+               }
+            }
+         }
+         return new AuthorStats(totals, authorIds, periods);
+      } catch (InterruptedException e) {
+         Thread.currentThread().interrupt();
+         throw new IOException("Interrupted while computing diffs", e);
+      } catch (ExecutionException e) {
+         if (e.getCause() instanceof IOException) {
+            throw (IOException) e.getCause();
+         }
+         throw new IllegalStateException(e.getCause());
+      } finally {
+         pool.shutdownNow();
+      }
+   }
+
+   private static Future<Map<Long, long[]>> submit(ForkJoinPool pool, Repository repository,
+         List<CommitDiff> batch) {
+      return pool.submit(() -> countBatch(repository, batch));
+   }
+
+   /**
+    * Diffs a batch of commits with its own reader, which unlike the repository
+    * cannot be shared between threads.
+    */
+   private static Map<Long, long[]> countBatch(Repository repository, List<CommitDiff> batch)
+         throws IOException {
+      Map<Long, long[]> totals = new HashMap<>();
+      try (ObjectReader reader = repository.newObjectReader();
+            DiffFormatter formatter = new DiffFormatter(DisabledOutputStream.INSTANCE)) {
+         formatter.setReader(reader, repository.getConfig());
+         formatter.setDetectRenames(true);
+         for (CommitDiff commit : batch) {
+            long[] sums = totals.computeIfAbsent(commit.key, key -> new long[3]);
+            sums[COMMITS]++;
+            if (commit.tree == null) {
+               continue;
+            }
+            for (DiffEntry entry : formatter.scan(commit.parentTree, commit.tree)) {
+               for (Edit edit : formatter.toFileHeader(entry).toEditList()) {
+                  sums[ADDED] += edit.getLengthB();
+                  sums[REMOVED] += edit.getLengthA();
+               }
+            }
+         }
+      }
+      return totals;
+   }
+
+   private final List<Row> rows = new ArrayList<>();
+
+   /** The rows by author and period start. */
+   private final Map<String, Map<LocalDate, Row>> byAuthor = new HashMap<>();
+
+   private AuthorStats(Map<Long, long[]> totals, AuthorIds authorIds, List<LocalDate> periods) {
+      for (Map.Entry<Long, long[]> entry : totals.entrySet()) {
+         long[] sums = entry.getValue();
+         Row row = new Row(authorIds.getName((int) (entry.getKey() >>> 32)),
+               periods.get((int) (long) entry.getKey()), (int) sums[COMMITS], sums[ADDED],
+               sums[REMOVED]);
+         rows.add(row);
+         byAuthor.computeIfAbsent(row.author, author -> new HashMap<>()).put(row.periodStart,
+               row);
+      }
+      rows.sort(Comparator.comparing(Row::getAuthor).thenComparing(Row::getPeriodStart));
+   }
+
+   /**
+    * Returns the churn of an author in a period.
+    *
+    * @param author      the author name
+    * @param periodStart the first day of the period
+    * @return the churn, or null if the author made no commits in the period
+    */
+   public Row get(String author, LocalDate periodStart) {
+      Map<LocalDate, Row> periods = byAuthor.get(author);
+      return periods == null ? null : periods.get(periodStart);
+   }
+
+   /**
+    * @return the churn of every author in every period they made commits in,
+    *         ordered by author and period
+    */
+   public List<Row> getRows() {
+      return Collections.unmodifiableList(rows);
+   }
+
+}
@@ -0,0 +1,258 @@
+package my.git.stats;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+import org.eclipse.jgit.lib.ObjectId;
+
+import my.git.util.AtomicFiles;
+
+/**
+ * An on-disk cache of per-file blame results. Entries are keyed by the blob id of
+ * the blamed file, its path and the blame options used, so a file whose content
+ * has not changed since a previous run can be answered without running blame
+ * again. Only the per-author line counts are stored, with the commit times of
+ * the lines, so a cached result is put into the age buckets of the run that
+ * reads it.
+ * <p>
+ * The cache holds at most a fixed number of entries and evicts the least
+ * recently used entry when it is full. It is loaded completely into memory when
+ * opened and written back by {@link #save()}. All methods are safe to call from
+ * multiple threads.
+ */
+class BlameCache {
+
+   private static final class Key {
+      final ObjectId blobId;
+      final String path;
+      final String options;
+
+      Key(ObjectId blobId, String path, String options) {
+         this.blobId = blobId;
+         this.path = path;
+         this.options = options;
+      }
+
+      @Override
+      public boolean equals(Object obj) {
+         if (this == obj)
+            return true;
+         if (!(obj instanceof Key))
+            return false;
+         Key other = (Key) obj;
+         return blobId.equals(other.blobId) && path.equals(other.path)
+               && options.equals(other.options);
+      }
+
+      @Override
+      public int hashCode() {
+         return Objects.hash(blobId, path, options);
+      }
+   }
+
+   private static final class Value {
+      final String[] authors;
+      final int[] lines;
+      /** The commit times of the lines of each author, see AuthorCounts. */
+      final int[][] commitTimes;
+
+      Value(String[] authors, int[] lines, int[][] commitTimes) {
+         this.authors = authors;
+         this.lines = lines;
+         this.commitTimes = commitTimes;
+      }
+   }
+
+   private static final int MAGIC = 0x424c4d43;
+   private static final int VERSION = 2;
+
+   /**
+    * Opens a cache file. If the file does not exist yet, or cannot be read as a
+    * cache, the cache starts out empty.
+    *
+    * @param file       the file the cache is stored in
+    * @param maxEntries the maximum number of entries to keep
+    * @return the opened cache
+    */
+   static BlameCache open(File file, int maxEntries) {
+      BlameCache cache = new BlameCache(file, maxEntries);
+      if (file.isFile()) {
+         try {
+            cache.read();
+         } catch (IOException e) {
+            System.err.println("Ignoring unreadable blame cache " + file + ": " + e.getMessage());
+            cache.entries.clear();
+         }
+      }
+      return cache;
+   }
+
+   private final File file;
+   private final int maxEntries;
+   private final LinkedHashMap<Key, Value> entries;
+
+   private long hits;
+   private long misses;
+
+   private BlameCache(File file, int maxEntries) {
+      if (maxEntries < 1) {
+         throw new IllegalArgumentException("maxEntries must be at least 1: " + maxEntries);
+      }
+      this.file = file;
+      this.maxEntries = maxEntries;
+      this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+         private static final long serialVersionUID = 1L;
+
+         @Override
+         protected boolean removeEldestEntry(Map.Entry<Key, Value> eldest) {
+            return size() > BlameCache.this.maxEntries;
+         }
+      };
+   }
+
+   /**
+    * Looks up the cached lines per author of a file.
+    *
+    * @param blobId    the blob id of the file content
+    * @param path      the path of the file
+    * @param options   a description of the blame options used
+    * @param authorIds     the ids to count the cached authors under
+    * @param referenceTime the time the ages of the lines are measured from, in
+    *                      seconds since the epoch
+    * @return new counts of the lines per author, or null if the file is not cached
+    */
+   synchronized AuthorCounts get(ObjectId blobId, String path, String options,
+         AuthorIds authorIds, long referenceTime) {
+      Value value = entries.get(new Key(blobId, path, options));
+      if (value == null) {
+         misses++;
+         return null;
+      }
+      hits++;
+      AuthorCounts linesPerAuthor = new AuthorCounts(value.authors.length);
+      for (int i = 0; i < value.authors.length; i++) {
+         linesPerAuthor.add(authorIds.intern(value.authors[i]), value.lines[i],
+               value.commitTimes[i], referenceTime);
+      }
+      return linesPerAuthor;
+   }
+
+   synchronized long getHits() {
+      return hits;
+   }
+
+   synchronized long getMisses() {
+      return misses;
+   }
+
+   /**
+    * Adds the lines per author of a file to the cache, evicting the least
+    * recently used entry if the cache is full. Authors are stored by name, so
+    * the entry can be used by runs that assign different ids.
+    *
+    * @param blobId         the blob id of the file content
+    * @param path           the path of the file
+    * @param options        a description of the blame options used
+    * @param linesPerAuthor the lines per author of the file
+    * @param authorIds      the ids the lines are counted under
+    */
+   synchronized void put(ObjectId blobId, String path, String options,
+         AuthorCounts linesPerAuthor, AuthorIds authorIds) {
+      String[] authors = new String[linesPerAuthor.size()];
+      int[] lines = new int[authors.length];
+      int[][] commitTimes = new int[authors.length][];
+      for (int i = 0; i < authors.length; i++) {
+         authors[i] = authorIds.getName(linesPerAuthor.getId(i));
+         lines[i] = linesPerAuthor.getLines(i);
+         commitTimes[i] = linesPerAuthor.getCommitTimes(i);
+      }
+      entries.put(new Key(blobId.copy(), path, options),
+            new Value(authors, lines, commitTimes));
+   }
+
+   private void read() throws IOException {
+      // a cache of an older format starts out empty
+      AtomicFiles.read(file, MAGIC, VERSION, "a blame cache file", in -> {
+         int entryCount = in.readInt();
+         byte[] rawId = new byte[20];
+         for (int i = 0; i < entryCount; i++) {
+            in.readFully(rawId);
+            ObjectId blobId = ObjectId.fromRaw(rawId);
+            String path = in.readUTF();
+            String options = in.readUTF();
+            int authorCount = in.readInt();
+            String[] authors = new String[authorCount];
+            int[] lines = new int[authorCount];
+            int[][] commitTimes = new int[authorCount][];
+            for (int j = 0; j < authorCount; j++) {
+               authors[j] = in.readUTF();
+               lines[j] = in.readInt();
+               commitTimes[j] = readCommitTimes(in);
+            }
+            entries.put(new Key(blobId, path, options),
+                  new Value(authors, lines, commitTimes));
+         }
+         return entries;
+      });
+   }
+
+   /**
+    * Writes the cache back to its file. The file is replaced atomically, so an
+    * interrupted save leaves the previous cache intact.
+    *
+    * @throws IOException if the file cannot be written
+    */
+   synchronized void save() throws IOException {
+      AtomicFiles.write(file, MAGIC, VERSION, out -> {
+         out.writeInt(entries.size());
+         byte[] rawId = new byte[20];
+         // least recently used first, so reading the file back restores the order
+         for (Map.Entry<Key, Value> entry : entries.entrySet()) {
+            entry.getKey().blobId.copyRawTo(rawId, 0);
+            out.write(rawId);
+            out.writeUTF(entry.getKey().path);
+            out.writeUTF(entry.getKey().options);
+            Value value = entry.getValue();
+            out.writeInt(value.authors.length);
+            for (int i = 0; i < value.authors.length; i++) {
+               out.writeUTF(value.authors[i]);
+               out.writeInt(value.lines[i]);
+               writeCommitTimes(out, value.commitTimes[i]);
+            }
+         }
+      });
+   }
+
+   /**
+    * Reads the commit times of the lines of one author, as written by
+    * {@link #writeCommitTimes}.
+    */
+   static int[] readCommitTimes(DataInputStream in) throws IOException {
+      int[] commitTimes = new int[in.readInt() * 2];
+      for (int i = 0; i < commitTimes.length; i++) {
+         commitTimes[i] = in.readInt();
+      }
+      return commitTimes;
+   }
+
+   /**
+    * Writes the commit times of the lines of one author, as returned by
+    * {@link AuthorCounts#getCommitTimes}.
+    */
+   static void writeCommitTimes(DataOutputStream out, int[] commitTimes) throws IOException {
+      out.writeInt(commitTimes.length / 2);
+      for (int value : commitTimes) {
+         out.writeInt(value);
+      }
+   }
+
+   synchronized int size() {
+      return entries.size();
+   }
+
+}
@@ -0,0 +1,348 @@
+package my.git.stats;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.jgit.lib.ObjectId;
+
+import my.git.stats.LinesPerAuthor.FileBlameResult;
+import my.git.util.AtomicFiles;
+
+/**
+ * A journal of the files a long {@link LinesPerAuthor} run has finished, so a
+ * run that fails part way can be resumed without blaming those files again.
+ * Every finished file is appended to the journal with its lines per author and
+ * the commit times of those lines, and the journal is flushed to disk at a fixed
+ * interval, so a failed run loses at most the files of one interval. Resumed
+ * lines are put into the age buckets of the resumed run, so they are measured
+ * from the same reference time as the files blamed after the resume.
+ * <p>
+ * The journal starts with the commit and the blame options of the run, and is
+ * only resumed by a run of the same commit with the same options. A resumed run
+ * reuses the saved result of a file only if its content did not change, so its
+ * result is the same as that of an uninterrupted run. Files blamed from a commit
+ * are compared by their blob id, and files blamed from the working directory by
+ * their size and modification time, as git compares them with its index, so
+ * files edited since the failed run are blamed again. A record cut short by the
+ * failure is dropped when the journal is resumed. All methods are safe to call
+ * from multiple threads.
+ */
+class BlameCheckpoint implements Closeable {
+
+   private static final class Entry {
+      /** The blob id of a file blamed from a commit, otherwise null. */
+      final ObjectId blobId;
+      /** The size and modification time of a file in the working directory. */
+      final long size;
+      final long modified;
+      final String[] authors;
+      final int[] lines;
+      /** The commit times of the lines of each author, see AuthorCounts. */
+      final int[][] commitTimes;
+
+      Entry(ObjectId blobId, long size, long modified, String[] authors, int[] lines,
+            int[][] commitTimes) {
+         this.blobId = blobId;
+         this.size = size;
+         this.modified = modified;
+         this.authors = authors;
+         this.lines = lines;
+         this.commitTimes = commitTimes;
+      }
+
+      /**
+       * @return true if the entry was saved for the same content of a file
+       */
+      boolean matches(ObjectId otherBlobId, File workTreeFile) {
+         if (blobId != null) {
+            return blobId.equals(otherBlobId);
+         }
+         return workTreeFile != null && workTreeFile.length() == size
+               && workTreeFile.lastModified() == modified;
+      }
+   }
+
+   private static final int MAGIC = 0x4c504350;
+   private static final int VERSION = 2;
+
+   /**
+    * Starts a new journal, replacing any journal in the file.
+    *
+    * @param file            the journal file
+    * @param commitId        the commit the run blames, or null for a working
+    *                        directory
+    * @param workTree        the working directory the files are read from if
+    *                        commitId is null
+    * @param optionsKey      the blame options of the run, see
+    *                        {@link BlameContext#getOptionsKey()}
+    * @param intervalSeconds the seconds between two flushes to disk
+    * @return the empty journal
+    * @throws IOException if the file cannot be written
+    */
+   static BlameCheckpoint create(File file, ObjectId commitId, File workTree,
+         String optionsKey, int intervalSeconds) throws IOException {
+      BlameCheckpoint checkpoint = new BlameCheckpoint(file, commitId, workTree, optionsKey,
+            intervalSeconds);
+      checkpoint.rewrite();
+      return checkpoint;
+   }
+
+   /**
+    * Resumes the journal of an earlier run. Finished files are read back and
+    * the journal is continued in the same file.
+    *
+    * @param file            the journal file
+    * @param commitId        the commit the run blames, or null for a working
+    *                        directory
+    * @param workTree        the working directory the files are read from if
+    *                        commitId is null
+    * @param optionsKey      the blame options of the run, see
+    *                        {@link BlameContext#getOptionsKey()}
+    * @param intervalSeconds the seconds between two flushes to disk
+    * @return the resumed journal, or a new journal if the file does not exist
+    * @throws IOException              if the file cannot be read or written
+    * @throws IllegalArgumentException if the journal is of a run of another
+    *                                  commit or with other options
+    */
+   static BlameCheckpoint resume(File file, ObjectId commitId, File workTree,
+         String optionsKey, int intervalSeconds) throws IOException {
+      BlameCheckpoint checkpoint = new BlameCheckpoint(file, commitId, workTree, optionsKey,
+            intervalSeconds);
+      if (file.isFile()) {
+         checkpoint.read();
+      }
+      // drops a record the failed run only wrote in part
+      checkpoint.rewrite();
+      return checkpoint;
+   }
+
+   private static ObjectId readId(DataInputStream in) throws IOException {
+      if (!in.readBoolean()) {
+         return null;
+      }
+      byte[] rawId = new byte[20];
+      in.readFully(rawId);
+      return ObjectId.fromRaw(rawId);
+   }
+
+   private static void writeId(DataOutputStream out, ObjectId id) throws IOException {
+      out.writeBoolean(id != null);
+      if (id != null) {
+         byte[] rawId = new byte[20];
+         id.copyRawTo(rawId, 0);
+         out.write(rawId);
+      }
+   }
+
+   private static void writeEntry(DataOutputStream out, String path, Entry entry)
+         throws IOException {
+      out.writeUTF(path);
+      writeId(out, entry.blobId);
+      if (entry.blobId == null) {
+         out.writeLong(entry.size);
+         out.writeLong(entry.modified);
+      }
+      out.writeInt(entry.authors.length);
+      for (int i = 0; i < entry.authors.length; i++) {
+         out.writeUTF(entry.authors[i]);
+         out.writeInt(entry.lines[i]);
+         BlameCache.writeCommitTimes(out, entry.commitTimes[i]);
+      }
+   }
+
+   private final File file;
+   private final ObjectId commitId;
+   private final File workTree;
+   private final String optionsKey;
+   private final long intervalNanos;
+
+   private final Map<String, Entry> finished = new ConcurrentHashMap<>();
+   private final AtomicInteger resumedFiles = new AtomicInteger();
+
+   private DataOutputStream out;
+   private FileOutputStream fileOut;
+   private long lastFlush = System.nanoTime();
+
+   private BlameCheckpoint(File file, ObjectId commitId, File workTree, String optionsKey,
+         int intervalSeconds) {
+      this.file = file;
+      this.commitId = commitId == null ? null : commitId.copy();
+      this.workTree = workTree;
+      this.optionsKey = optionsKey;
+      this.intervalNanos = intervalSeconds * 1_000_000_000L;
+   }
+
+   /**
+    * @return the file of a target in the working directory, or null if it is
+    *         blamed from a commit
+    */
+   private File workTreeFile(BlameTargets.Target target) {
+      return target.blobId != null || workTree == null ? null
+            : new File(workTree, target.path);
+   }
+
+   /**
+    * Records a finished file. The journal is flushed to disk if the interval
+    * has passed since the last flush.
+    *
+    * @param target    the blamed file
+    * @param result    the lines per author of the file
+    * @param authorIds the ids the result is counted under
+    * @throws UncheckedIOException if the journal cannot be written
+    */
+   void add(BlameTargets.Target target, FileBlameResult result, AuthorIds authorIds) {
+      AuthorCounts linesPerAuthor = result.linesPerAuthor;
+      String[] authors = new String[linesPerAuthor.size()];
+      int[] lines = new int[authors.length];
+      int[][] commitTimes = new int[authors.length][];
+      for (int i = 0; i < authors.length; i++) {
+         authors[i] = authorIds.getName(linesPerAuthor.getId(i));
+         lines[i] = linesPerAuthor.getLines(i);
+         commitTimes[i] = linesPerAuthor.getCommitTimes(i);
+      }
+      File workTreeFile = workTreeFile(target);
+      Entry entry = workTreeFile != null
+            ? new Entry(null, workTreeFile.length(), workTreeFile.lastModified(), authors,
+                  lines, commitTimes)
+            : new Entry(target.blobId, -1, -1, authors, lines, commitTimes);
+      finished.put(target.path, entry);
+      try {
+         synchronized (this) {
+            writeEntry(out, target.path, entry);
+            if (System.nanoTime() - lastFlush >= intervalNanos) {
+               flush();
+            }
+         }
+      } catch (IOException e) {
+         throw new UncheckedIOException(e);
+      }
+   }
+
+   /**
+    * Returns the saved result of a file finished by an earlier run.
+    *
+    * @param target        the file to blame
+    * @param authorIds     the ids to count the saved authors under
+    * @param referenceTime the time the ages of the lines are measured from, in
+    *                      seconds since the epoch
+    * @return the lines per author of the file, or null if the file was not
+    *         finished or its content changed since
+    */
+   FileBlameResult get(BlameTargets.Target target, AuthorIds authorIds, long referenceTime) {
+      Entry entry = finished.get(target.path);
+      if (entry == null || !entry.matches(target.blobId, workTreeFile(target))) {
+         return null;
+      }
+      AuthorCounts linesPerAuthor = new AuthorCounts(entry.authors.length);
+      for (int i = 0; i < entry.authors.length; i++) {
+         linesPerAuthor.add(authorIds.intern(entry.authors[i]), entry.lines[i],
+               entry.commitTimes[i], referenceTime);
+      }
+      resumedFiles.incrementAndGet();
+      return new FileBlameResult(target.path, linesPerAuthor);
+   }
+
+   /**
+    * @return the number of files whose saved result was reused
+    */
+   int getResumedFiles() {
+      return resumedFiles.get();
+   }
+
+   /**
+    * @return the number of finished files in the journal
+    */
+   int size() {
+      return finished.size();
+   }
+
+   /**
+    * Flushes the journal to disk and closes it.
+    */
+   @Override
+   public synchronized void close() throws IOException {
+      if (out != null) {
+         flush();
+         out.close();
+         out = null;
+      }
+   }
+
+   private void flush() throws IOException {
+      out.flush();
+      fileOut.getFD().sync();
+      lastFlush = System.nanoTime();
+   }
+
+   private void read() throws IOException {
+      if (AtomicFiles.read(file, MAGIC, VERSION, "a LinesPerAuthor checkpoint",
+            this::readJournal) == null) {
+         throw new IOException(file + " is a checkpoint of another version");
+      }
+   }
+
+   /**
+    * Reads the header and the finished files of a journal.
+    */
+   private Boolean readJournal(DataInputStream in) throws IOException {
+      ObjectId savedCommitId = readId(in);
+      String savedOptionsKey = in.readUTF();
+      if (!Objects.equals(savedCommitId, commitId) || !savedOptionsKey.equals(optionsKey)) {
+         throw new IllegalArgumentException(file + " is the checkpoint of a run of "
+               + (savedCommitId == null ? "the working directory" : savedCommitId.name())
+               + " with options " + savedOptionsKey);
+      }
+      while (true) {
+         String path;
+         Entry entry;
+         try {
+            path = in.readUTF();
+            ObjectId blobId = readId(in);
+            long size = blobId == null ? in.readLong() : -1;
+            long modified = blobId == null ? in.readLong() : -1;
+            int authorCount = in.readInt();
+            String[] authors = new String[authorCount];
+            int[] lines = new int[authorCount];
+            int[][] commitTimes = new int[authorCount][];
+            for (int i = 0; i < authorCount; i++) {
+               authors[i] = in.readUTF();
+               lines[i] = in.readInt();
+               commitTimes[i] = BlameCache.readCommitTimes(in);
+            }
+            entry = new Entry(blobId, size, modified, authors, lines, commitTimes);
+         } catch (EOFException e) {
+            // the end of the journal, or a record cut short by the failure
+            return Boolean.TRUE;
+         }
+         finished.put(path, entry);
+      }
+   }
+
+   /**
+    * Writes the header and all finished files to a new journal, which replaces
+    * the file atomically, and continues the journal in it.
+    */
+   private void rewrite() throws IOException {
+      AtomicFiles.write(file, MAGIC, VERSION, tempOut -> {
+         writeId(tempOut, commitId);
+         tempOut.writeUTF(optionsKey);
+         for (Map.Entry<String, Entry> finishedFile : finished.entrySet()) {
+            writeEntry(tempOut, finishedFile.getKey(), finishedFile.getValue());
+         }
+      });
+      fileOut = new FileOutputStream(file, true);
+      out = new DataOutputStream(new BufferedOutputStream(fileOut));
+   }
+
+}
@@ -0,0 +1,114 @@
+package my.git.stats;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+import my.git.stats.LinesPerAuthor.FileBlameResult;
+
+/**
+ * The settings and shared state used while blaming the files of a
+ * {@link LinesPerAuthor} run.
+ */
+class BlameContext {
+
+   final BlameCounts counts;
+
+   /** The ids the authors of all results of the run are counted under. */
+   final AuthorIds authorIds;
+
+   /** The progress and per-file latency of the run. */
+   final BlameMetrics metrics;
+
+   /**
+    * The time line ages are measured from, in seconds since the epoch. This is
+    * the time the context was created unless it is set to the time of the blamed
+    * commit.
+    */
+   long referenceTime = System.currentTimeMillis() / 1000;
+
+   BlameCache cache;
+
+   /** Journals finished files so a failed run can be resumed, or null. */
+   BlameCheckpoint checkpoint;
+
+   /** Resolves identities to canonical authors, or null to count raw names. */
+   AuthorResolver authors;
+
+   /** How lines are matched to the lines of earlier versions. */
+   BlameProfile profile = BlameProfile.WHITESPACE_INSENSITIVE;
+
+   /**
+    * The history boundary of the run, in seconds since the epoch, or 0 to blame
+    * the full history. Lines last changed before the boundary are counted under
+    * {@link LinesPerAuthor#BOUNDARY_AUTHOR}.
+    */
+   long sinceTime;
+
+   /** Drops the files not worth blaming, or null to blame every file. */
+   BlameFilter filter;
+
+   /**
+    * Receives every file result as soon as it is blamed, or null to keep the
+    * results of all files in the returned tree.
+    */
+   ResultSink sink;
+
+   BlameContext(BlameCounts counts) {
+      this(counts, new AuthorIds());
+   }
+
+   BlameContext(BlameCounts counts, AuthorIds authorIds) {
+      this.counts = counts;
+      this.authorIds = authorIds;
+      this.metrics = new BlameMetrics(counts);
+   }
+
+   /**
+    * Describes the blame options used by {@link LinesPerAuthor#countFile}, so
+    * cached results are only reused for blames run the same way.
+    *
+    * @return the description of the blame options
+    */
+   String getOptionsKey() {
+      String key = profile.getKey();
+      if (authors != null) {
+         key += ";mailmap=" + authors.getFingerprint();
+      }
+      if (sinceTime > 0) {
+         key += ";since=" + sinceTime;
+      }
+      return key;
+   }
+
+   /**
+    * Returns the name lines of an identity are counted under.
+    *
+    * @param name  the name recorded in the history
+    * @param email the email recorded in the history
+    * @return the canonical name if a mailmap is used, otherwise the given name
+    */
+   String resolveName(String name, String email) {
+      return authors == null ? name : authors.resolve(name, email).getName();
+   }
+
+   /**
+    * Hands the result of a file to the sink, if the run streams its results.
+    *
+    * @param result the result of a blamed file
+    * @return true if the result was streamed and must not be kept in the result
+    *         tree, false if there is no sink
+    * @throws UncheckedIOException if the sink cannot write the result
+    */
+   boolean stream(FileBlameResult result) {
+      if (sink == null) {
+         return false;
+      }
+      try {
+         sink.add(result);
+      } catch (IOException e) {
+         throw new UncheckedIOException(e);
+      }
+      return true;
+   }
+
+}
@@ -0,0 +1,45 @@
+package my.git.stats;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Running totals of the number of files and lines blamed during a
+ * {@link LinesPerAuthor} run. The counters can be updated from any number of
+ * threads without contention.
+ */
+public class BlameCounts {
+
+   private final LongAdder files = new LongAdder();
+   private final LongAdder lines = new LongAdder();
+
+   /**
+    * Records one blamed file.
+    */
+   public void addFile() {
+      files.increment();
+   }
+
+   /**
+    * Records a number of blamed lines.
+    *
+    * @param count the number of lines to add
+    */
+   public void addLines(long count) {
+      lines.add(count);
+   }
+
+   /**
+    * @return the number of files blamed so far
+    */
+   public long getFiles() {
+      return files.sum();
+   }
+
+   /**
+    * @return the number of lines blamed so far
+    */
+   public long getLines() {
+      return lines.sum();
+   }
+
+}
@@ -0,0 +1,243 @@
+package my.git.stats;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import org.eclipse.jgit.diff.RawText;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.Repository;
+
+/**
+ * Drops the files that are not worth blaming from a set of
+ * {@link BlameTargets} before any blame runs: files outside the included
+ * paths, files larger than a size cap and binary files. The checks run from the
+ * cheapest to the most expensive, and the binary check only reads the first few
+ * kilobytes of a file, the same way git decides whether a file is binary.
+ * <p>
+ * Path patterns are globs: "*" and "?" match within one path segment and "**"
+ * matches across segments. A pattern without a "/" matches the file name in any
+ * directory, as in a .gitignore file. All include patterns, and all exclude
+ * patterns, are compiled into a single regular expression each, so every path is
+ * matched once per list however many patterns it has.
+ */
+public class BlameFilter {
+
+   /**
+    * The reasons a file is skipped, in the order they are checked.
+    */
+   public enum Rule {
+      /** The path is not included or is excluded by a pattern. */
+      PATH,
+      /** The file is larger than the size cap. */
+      SIZE,
+      /** The file looks like a binary file. */
+      BINARY
+   }
+
+   /** The number of leading bytes checked for binary content. */
+   private static final int SNIFF_LENGTH = 8000;
+
+   /**
+    * Translates a glob into a regular expression matching whole paths.
+    *
+    * @param glob the glob
+    * @return the regular expression
+    */
+   static String globToRegex(String glob) {
+      StringBuilder regex = new StringBuilder();
+      if (glob.startsWith("/")) {
+         glob = glob.substring(1);
+      } else if (glob.indexOf('/') < 0) {
+         // a bare file name pattern matches in any directory
+         regex.append("(?:.*/)?");
+      }
+      for (int i = 0; i < glob.length(); i++) {
+         char c = glob.charAt(i);
+         if (c == '*' && i + 1 < glob.length() && glob.charAt(i + 1) == '*') {
+            i++;
+            if (i + 1 < glob.length() && glob.charAt(i + 1) == '/') {
+               // "**/" also matches no directory at all
+               i++;
+               regex.append("(?:.*/)?");
+            } else {
+               regex.append(".*");
+            }
+         } else if (c == '*') {
+            regex.append("[^/]*");
+         } else if (c == '?') {
+            regex.append("[^/]");
+         } else if ("\\.[]{}()+-^$|".indexOf(c) >= 0) {
+            regex.append('\\').append(c);
+         } else {
+            regex.append(c);
+         }
+      }
+      return regex.toString();
+   }
+
+   private static Pattern compile(List<String> globs) {
+      if (globs.isEmpty()) {
+         return null;
+      }
+      StringBuilder regex = new StringBuilder();
+      for (String glob : globs) {
+         if (regex.length() > 0) {
+            regex.append('|');
+         }
+         regex.append("(?:").append(globToRegex(glob)).append(')');
+      }
+      return Pattern.compile(regex.toString());
+   }
+
+   /**
+    * @param in the content of a file
+    * @return true if the leading bytes of the content look binary
+    * @throws IOException if the content cannot be read
+    */
+   static boolean isBinary(InputStream in) throws IOException {
+      byte[] buffer = new byte[SNIFF_LENGTH];
+      int length = in.readNBytes(buffer, 0, buffer.length);
+      return RawText.isBinary(buffer, length, length < buffer.length);
+   }
+
+   private final Pattern includes;
+   private final Pattern excludes;
+   private final long maxFileSize;
+
+   private final Map<Rule, Integer> skipped = new EnumMap<>(Rule.class);
+
+   /**
+    * @param includes    the globs of the paths to blame, or an empty list to
+    *                    blame all paths
+    * @param excludes    the globs of the paths not to blame
+    * @param maxFileSize the size in bytes above which files are not blamed, or 0
+    *                    for no limit
+    */
+   public BlameFilter(List<String> includes, List<String> excludes, long maxFileSize) {
+      this.includes = compile(includes);
+      this.excludes = compile(excludes);
+      this.maxFileSize = maxFileSize;
+      for (Rule rule : Rule.values()) {
+         skipped.put(rule, 0);
+      }
+   }
+
+   /**
+    * Removes the files that should not be blamed. Directories that end up empty
+    * are removed as well.
+    *
+    * @param repository the repository the targets were listed from
+    * @param targets    the targets to filter
+    * @return the targets that should be blamed
+    * @throws IOException if a file cannot be read
+    */
+   public BlameTargets apply(Repository repository, BlameTargets targets) throws IOException {
+      try (ObjectReader reader = repository.newObjectReader()) {
+         File workTree = targets.getCommitId() == null ? repository.getWorkTree() : null;
+         BlameTargets.Dir root = filterDir(reader, workTree, targets.getRoot());
+         return new BlameTargets(targets.getCommitId(), root);
+      }
+   }
+
+   /**
+    * @return a description of the rules, which differs between filters that
+    *         may skip different files
+    */
+   String getKey() {
+      return "include=" + (includes == null ? "" : includes.pattern()) + ";exclude="
+            + (excludes == null ? "" : excludes.pattern()) + ";max-size=" + maxFileSize;
+   }
+
+   /**
+    * @return the size in bytes above which files are not blamed, or 0 for no
+    *         limit
+    */
+   long getMaxFileSize() {
+      return maxFileSize;
+   }
+
+   /**
+    * @param rule a rule
+    * @return the number of files the rule skipped so far
+    */
+   public int getSkipped(Rule rule) {
+      return skipped.get(rule);
+   }
+
+   private BlameTargets.Dir filterDir(ObjectReader reader, File workTree, BlameTargets.Dir dir)
+         throws IOException {
+      BlameTargets.Dir filtered = new BlameTargets.Dir(dir.path);
+      for (BlameTargets.Dir child : dir.dirs) {
+         BlameTargets.Dir filteredChild = filterDir(reader, workTree, child);
+         if (!filteredChild.files.isEmpty() || !filteredChild.dirs.isEmpty()) {
+            filtered.dirs.add(filteredChild);
+         }
+      }
+      for (BlameTargets.Target target : dir.files) {
+         Rule rule = check(reader, workTree, target);
+         if (rule == null) {
+            filtered.files.add(target);
+         } else {
+            skipped.merge(rule, 1, Integer::sum);
+         }
+      }
+      return filtered;
+   }
+
+   /**
+    * @return the rule that skips the target, or null if it should be blamed
+    */
+   private Rule check(ObjectReader reader, File workTree, BlameTargets.Target target)
+         throws IOException {
+      if (!matchesPath(target.path)) {
+         return Rule.PATH;
+      }
+      if (target.blobId != null) {
+         // only reads the object header
+         if (maxFileSize > 0
+               && reader.getObjectSize(target.blobId, Constants.OBJ_BLOB) > maxFileSize) {
+            return Rule.SIZE;
+         }
+         try (InputStream in = reader.open(target.blobId, Constants.OBJ_BLOB).openStream()) {
+            return isBinary(in) ? Rule.BINARY : null;
+         }
+      }
+      File file = new File(workTree, target.path);
+      if (maxFileSize > 0 && file.length() > maxFileSize) {
+         return Rule.SIZE;
+      }
+      try (InputStream in = new FileInputStream(file)) {
+         return isBinary(in) ? Rule.BINARY : null;
+      }
+   }
+
+   /**
+    * @param path a repository-relative path
+    * @return true if the path is included and not excluded
+    */
+   boolean matchesPath(String path) {
+      return (includes == null || includes.matcher(path).matches())
+            && (excludes == null || !excludes.matcher(path).matches());
+   }
+
+   /**
+    * @return a description of the files skipped by each rule
+    */
+   public String getSkippedSummary() {
+      List<String> parts = new ArrayList<>();
+      for (Rule rule : Rule.values()) {
+         parts.add(rule.name().toLowerCase(Locale.ROOT) + " " + skipped.get(rule));
+      }
+      return String.join(", ", parts);
+   }
+
+}
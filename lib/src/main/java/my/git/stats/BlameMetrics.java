@@ -0,0 +1,308 @@
+package my.git.stats;
+
+import java.io.Closeable;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Live progress and latency metrics of a {@link LinesPerAuthor} run. The time
+ * to blame every file is recorded in a histogram with logarithmic buckets, so
+ * percentiles can be read at any time without keeping every sample, and the
+ * slowest files are kept in a small heap. Recording is safe from any number of
+ * threads and only takes a lock for files that are slower than the slowest ones
+ * seen so far.
+ * <p>
+ * The percentiles and the slowest files cover the whole run, and so do the
+ * rates exposed over JMX, which are averages since the run started. Only the
+ * rates of the progress lines are those of the last interval, as they are
+ * meant to show whether the run slows down.
+ * <p>
+ * The metrics can be exposed over JMX with {@link #register()} and printed
+ * periodically with {@link #startLogging}.
+ */
+public class BlameMetrics implements BlameMetricsMXBean, Closeable {
+
+   private static final class Sample {
+      final String path;
+      final long nanos;
+
+      Sample(String path, long nanos) {
+         this.path = path;
+         this.nanos = nanos;
+      }
+   }
+
+   /** The name the metrics are registered under by {@link #register()}. */
+   public static final String OBJECT_NAME = "my.git.stats:type=LinesPerAuthor";
+
+   /**
+    * Every power of two of microseconds is split into this many buckets, which
+    * keeps the error of a percentile below 1 / SUB_BUCKETS.
+    */
+   private static final int SUB_BUCKETS = 8;
+   private static final int SUB_BUCKET_BITS = 3;
+   private static final int BUCKET_COUNT = 64 * SUB_BUCKETS;
+
+   private static final int SLOWEST_COUNT = 10;
+
+   static int bucketOf(long micros) {
+      if (micros < SUB_BUCKETS) {
+         return (int) Math.max(micros, 0);
+      }
+      int exponent = 63 - Long.numberOfLeadingZeros(micros);
+      int mantissa = (int) (micros >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+      return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + mantissa;
+   }
+
+   static long bucketStart(int bucket) {
+      if (bucket < SUB_BUCKETS) {
+         return bucket;
+      }
+      int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+      long mantissa = bucket % SUB_BUCKETS + SUB_BUCKETS;
+      return mantissa << (exponent - SUB_BUCKET_BITS);
+   }
+
+   private final BlameCounts counts;
+   private final long startNanos = System.nanoTime();
+
+   private final LongAdder queued = new LongAdder();
+   private final LongAdder started = new LongAdder();
+   private final LongAdder finished = new LongAdder();
+
+   private final AtomicLongArray latencies = new AtomicLongArray(BUCKET_COUNT);
+
+   /** The slowest files of the whole run, fastest first. */
+   private final PriorityQueue<Sample> slowest = new PriorityQueue<>(
+         Comparator.comparingLong((Sample sample) -> sample.nanos));
+   /** The time of the fastest of the slowest files, once there are enough. */
+   private volatile long slowestThreshold;
+
+   private ObjectName registeredName;
+   private ScheduledExecutorService logger;
+
+   /**
+    * @param counts the file and line counters of the run
+    */
+   public BlameMetrics(BlameCounts counts) {
+      this.counts = counts;
+   }
+
+   /**
+    * Records files that are going to be blamed.
+    *
+    * @param count the number of files
+    */
+   void addQueuedFiles(int count) {
+      queued.add(count);
+   }
+
+   /**
+    * Records that the blame of a file started.
+    */
+   void fileStarted() {
+      started.increment();
+   }
+
+   /**
+    * Records that the blame of a file finished, whether or not it succeeded.
+    *
+    * @param path  the path of the file
+    * @param nanos the time it took to blame the file
+    */
+   void fileFinished(String path, long nanos) {
+      finished.increment();
+      latencies.incrementAndGet(Math.min(bucketOf(nanos / 1000), BUCKET_COUNT - 1));
+      if (nanos > slowestThreshold) {
+         synchronized (slowest) {
+            slowest.add(new Sample(path, nanos));
+            if (slowest.size() > SLOWEST_COUNT) {
+               slowest.poll();
+            }
+            if (slowest.size() == SLOWEST_COUNT) {
+               slowestThreshold = slowest.peek().nanos;
+            }
+         }
+      }
+   }
+
+   @Override
+   public long getPendingFiles() {
+      return Math.max(queued.sum() - started.sum(), 0);
+   }
+
+   @Override
+   public long getActiveFiles() {
+      return Math.max(started.sum() - finished.sum(), 0);
+   }
+
+   @Override
+   public long getFiles() {
+      return counts.getFiles();
+   }
+
+   @Override
+   public long getLines() {
+      return counts.getLines();
+   }
+
+   private double getElapsedSeconds() {
+      return (System.nanoTime() - startNanos) / Math.pow(10, 9);
+   }
+
+   @Override
+   public double getFilesPerSecond() {
+      return counts.getFiles() / getElapsedSeconds();
+   }
+
+   @Override
+   public double getLinesPerSecond() {
+      return counts.getLines() / getElapsedSeconds();
+   }
+
+   /**
+    * Returns a percentile of the time to blame a file. The result is the upper
+    * end of the histogram bucket the percentile falls into.
+    *
+    * @param percentile the percentile, from 0 to 100
+    * @return the percentile in milliseconds, or 0 if no file was recorded
+    */
+   double getLatencyPercentileMillis(double percentile) {
+      long[] snapshot = new long[BUCKET_COUNT];
+      long total = 0;
+      for (int i = 0; i < BUCKET_COUNT; i++) {
+         snapshot[i] = latencies.get(i);
+         total += snapshot[i];
+      }
+      if (total == 0) {
+         return 0;
+      }
+      long rank = Math.max((long) Math.ceil(percentile / 100 * total), 1);
+      long seen = 0;
+      for (int i = 0; i < BUCKET_COUNT; i++) {
+         seen += snapshot[i];
+         if (seen >= rank) {
+            return bucketStart(i + 1) / 1000.0;
+         }
+      }
+      return bucketStart(BUCKET_COUNT) / 1000.0;
+   }
+
+   @Override
+   public double getLatencyP50Millis() {
+      return getLatencyPercentileMillis(50);
+   }
+
+   @Override
+   public double getLatencyP95Millis() {
+      return getLatencyPercentileMillis(95);
+   }
+
+   @Override
+   public double getLatencyP99Millis() {
+      return getLatencyPercentileMillis(99);
+   }
+
+   @Override
+   public List<String> getSlowestFiles() {
+      List<Sample> samples;
+      synchronized (slowest) {
+         samples = new ArrayList<>(slowest);
+      }
+      samples.sort(Comparator.comparingLong((Sample sample) -> sample.nanos).reversed());
+      List<String> files = new ArrayList<>();
+      for (Sample sample : samples) {
+         files.add(String.format("%s: %.1f ms", sample.path, sample.nanos / Math.pow(10, 6)));
+      }
+      return files;
+   }
+
+   /**
+    * Registers the metrics with the platform MBean server under
+    * {@link #OBJECT_NAME}. A failure to register is reported and otherwise
+    * ignored, as the metrics are not needed for the run itself.
+    */
+   public void register() {
+      try {
+         MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+         ObjectName name = new ObjectName(OBJECT_NAME);
+         server.registerMBean(this, name);
+         registeredName = name;
+      } catch (JMException e) {
+         System.err.println("Could not register blame metrics: " + e.getMessage());
+      }
+   }
+
+   /**
+    * Prints a progress line at a fixed interval on a daemon thread, until
+    * {@link #close()} is called. The rates in the line are those of the last
+    * interval, while the percentiles and the slowest file are those of the
+    * whole run, and the line labels them so.
+    *
+    * @param intervalSeconds the seconds between two lines
+    * @param out             the stream to print to
+    */
+   public synchronized void startLogging(int intervalSeconds, PrintStream out) {
+      if (logger != null) {
+         throw new IllegalStateException("Already logging");
+      }
+      logger = Executors.newSingleThreadScheduledExecutor(runnable -> {
+         Thread thread = new Thread(runnable, "blame-metrics");
+         thread.setDaemon(true);
+         return thread;
+      });
+      long[] last = new long[3];
+      last[2] = System.nanoTime();
+      logger.scheduleAtFixedRate(() -> {
+         long files = counts.getFiles();
+         long lines = counts.getLines();
+         long now = System.nanoTime();
+         double seconds = (now - last[2]) / Math.pow(10, 9);
+         List<String> slowestFiles = getSlowestFiles();
+         out.println(String.format(
+               "Progress: %d files, %d lines, %d queued, %d active; last %ds: %.1f files/s, "
+                     + "%.0f lines/s; since start: p50 %.1f ms, p95 %.1f ms, p99 %.1f ms, "
+                     + "slowest %s",
+               files, lines, getPendingFiles(), getActiveFiles(), intervalSeconds,
+               (files - last[0]) / seconds, (lines - last[1]) / seconds, getLatencyP50Millis(),
+               getLatencyP95Millis(), getLatencyP99Millis(),
+               slowestFiles.isEmpty() ? "-" : slowestFiles.get(0)));
+         last[0] = files;
+         last[1] = lines;
+         last[2] = now;
+      }, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+   }
+
+   /**
+    * Stops logging and unregisters the metrics from JMX.
+    */
+   @Override
+   public synchronized void close() {
+      if (logger != null) {
+         logger.shutdownNow();
+         logger = null;
+      }
+      if (registeredName != null) {
+         try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(registeredName);
+         } catch (JMException e) {
+            // already gone
+         }
+         registeredName = null;
+      }
+   }
+
+}
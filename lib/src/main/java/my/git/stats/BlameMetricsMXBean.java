@@ -0,0 +1,67 @@
+package my.git.stats;
+
+import java.util.List;
+
+/**
+ * The live metrics of a {@link LinesPerAuthor} run, as exposed over JMX. All
+ * of them cover the run since it started. See {@link BlameMetrics}.
+ */
+public interface BlameMetricsMXBean {
+
+   /**
+    * @return the number of files whose blame has not started yet
+    */
+   long getPendingFiles();
+
+   /**
+    * @return the number of files being blamed right now
+    */
+   long getActiveFiles();
+
+   /**
+    * @return the number of files blamed so far
+    */
+   long getFiles();
+
+   /**
+    * @return the number of lines blamed so far
+    */
+   long getLines();
+
+   /**
+    * @return the average number of files blamed per second since the run
+    *         started
+    */
+   double getFilesPerSecond();
+
+   /**
+    * @return the average number of lines blamed per second since the run
+    *         started
+    */
+   double getLinesPerSecond();
+
+   /**
+    * @return the median time to blame a file since the run started, in
+    *         milliseconds
+    */
+   double getLatencyP50Millis();
+
+   /**
+    * @return the 95th percentile of the time to blame a file since the run
+    *         started, in milliseconds
+    */
+   double getLatencyP95Millis();
+
+   /**
+    * @return the 99th percentile of the time to blame a file since the run
+    *         started, in milliseconds
+    */
+   double getLatencyP99Millis();
+
+   /**
+    * @return the slowest files blamed since the run started, slowest first, as
+    *         "path: millis"
+    */
+   List<String> getSlowestFiles();
+
+}
@@ -0,0 +1,101 @@
+package my.git.stats;
+
+import java.util.Locale;
+
+import org.eclipse.jgit.diff.DiffAlgorithm;
+import org.eclipse.jgit.diff.DiffAlgorithm.SupportedAlgorithm;
+import org.eclipse.jgit.diff.RawTextComparator;
+
+/**
+ * Named sets of blame settings, which trade the accuracy of the attribution
+ * against the time it takes. A profile selects how lines are compared, the diff
+ * algorithm used to match the lines of a file to those of its parent, and
+ * whether a file is followed across renames.
+ */
+public enum BlameProfile {
+
+   /**
+    * Compares lines exactly with the histogram diff and does not follow renames,
+    * so the history of a renamed file ends at the rename.
+    */
+   FAST("fast", RawTextComparator.DEFAULT, SupportedAlgorithm.HISTOGRAM, false),
+
+   /**
+    * Compares lines exactly with the Myers diff and follows renames, which is
+    * what git blame does.
+    */
+   ACCURATE("accurate", RawTextComparator.DEFAULT, SupportedAlgorithm.MYERS, true),
+
+   /**
+    * Ignores all whitespace when comparing lines, so reindenting or reformatting
+    * a line does not take it over, and follows renames. This is the default.
+    */
+   WHITESPACE_INSENSITIVE("ws-ignore-all", RawTextComparator.WS_IGNORE_ALL,
+         SupportedAlgorithm.HISTOGRAM, true);
+
+   /**
+    * Finds a profile by name, ignoring case and accepting "-" for "_".
+    *
+    * @param name the name of the profile, for example "fast"
+    * @return the profile
+    * @throws IllegalArgumentException if there is no profile with the name
+    */
+   public static BlameProfile parse(String name) {
+      return valueOf(name.trim().toUpperCase(Locale.ROOT).replace('-', '_'));
+   }
+
+   private final String key;
+   private final RawTextComparator comparator;
+   private final SupportedAlgorithm algorithm;
+   private final boolean followRenames;
+
+   BlameProfile(String key, RawTextComparator comparator, SupportedAlgorithm algorithm,
+         boolean followRenames) {
+      this.key = key;
+      this.comparator = comparator;
+      this.algorithm = algorithm;
+      this.followRenames = followRenames;
+   }
+
+   /**
+    * @return the diff algorithm to match lines with
+    */
+   public DiffAlgorithm getDiffAlgorithm() {
+      return DiffAlgorithm.getAlgorithm(algorithm);
+   }
+
+   /**
+    * Returns a description of the settings of the profile, which is part of the
+    * key of cached blame results. The whitespace insensitive profile keeps the
+    * key that was used before there were profiles, so existing caches stay
+    * valid.
+    *
+    * @return the key of the profile
+    */
+   public String getKey() {
+      return key;
+   }
+
+   /**
+    * @return the name of the profile as it is given on the command line, for
+    *         example "whitespace-insensitive"
+    */
+   public String getName() {
+      return name().toLowerCase(Locale.ROOT).replace('_', '-');
+   }
+
+   /**
+    * @return the comparator lines are compared with
+    */
+   public RawTextComparator getTextComparator() {
+      return comparator;
+   }
+
+   /**
+    * @return whether the history of a file is followed across renames
+    */
+   public boolean isFollowRenames() {
+      return followRenames;
+   }
+
+}
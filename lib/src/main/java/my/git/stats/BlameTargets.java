@@ -0,0 +1,207 @@
+package my.git.stats;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.jgit.errors.RevisionSyntaxException;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.treewalk.TreeWalk;
+
+/**
+ * The set of files a {@link LinesPerAuthor} run blames, arranged in the same
+ * directory tree as the blame results. The files are either listed from the
+ * working directory, which includes anything on disk, or from the committed tree
+ * of a revision, which only includes tracked files and also works for bare
+ * repositories that have no working directory at all.
+ */
+public class BlameTargets {
+
+   static class Dir {
+      final String path;
+      final List<Target> files = new ArrayList<>();
+      final List<Dir> dirs = new ArrayList<>();
+
+      Dir(String path) {
+         this.path = path;
+      }
+   }
+
+   static class Target {
+      final String path;
+      final ObjectId blobId;
+
+      Target(String path, ObjectId blobId) {
+         this.path = path;
+         this.blobId = blobId;
+      }
+   }
+
+   private static void addWorkTreeFiles(String rootPath, File[] files, Dir dir) {
+      for (File file : files) {
+         if (file.isDirectory() && !file.getName().equals(".git")) {
+            Dir child = new Dir(relativePath(rootPath, file));
+            addWorkTreeFiles(rootPath, file.listFiles(), child);
+            dir.dirs.add(child);
+         } else if (Files.isRegularFile(file.toPath(), new LinkOption[0])) {
+            dir.files.add(new Target(relativePath(rootPath, file), null));
+         }
+      }
+   }
+
+   /**
+    * Lists the given files, and recursively the contents of the given
+    * directories, from the working directory. Blaming these targets includes any
+    * uncommitted changes, and untracked files are listed as well.
+    *
+    * @param workTree the working directory of the repository
+    * @param files    the files and directories to list
+    * @return the listed targets
+    */
+   public static BlameTargets fromWorkTree(File workTree, File[] files) {
+      Dir root = new Dir("");
+      addWorkTreeFiles(workTree.toString(), files, root);
+      return new BlameTargets(null, root);
+   }
+
+   /**
+    * Lists the regular files in the committed tree of a revision. Nothing is read
+    * from the working directory, so this also works on bare repositories.
+    * Symbolic links and submodules are skipped because they cannot be blamed.
+    *
+    * @param repository the repository to read from
+    * @param revision   the revision to list, for example "HEAD" or a branch name
+    * @return the listed targets
+    * @throws IOException if the revision cannot be resolved or its tree cannot be
+    *                     read
+    */
+   public static BlameTargets fromRevision(Repository repository, String revision)
+         throws IOException {
+      ObjectId commitId;
+      try {
+         commitId = repository.resolve(revision);
+      } catch (RevisionSyntaxException e) {
+         throw new IOException("Invalid revision " + revision, e);
+      }
+      if (commitId == null) {
+         throw new IOException("Unknown revision " + revision);
+      }
+
+      Dir root = new Dir("");
+      try (RevWalk revWalk = new RevWalk(repository);
+            TreeWalk treeWalk = new TreeWalk(repository)) {
+         RevCommit commit = revWalk.parseCommit(commitId);
+         treeWalk.addTree(commit.getTree());
+         treeWalk.setRecursive(false);
+
+         // the directory at each depth of the walk, the walk is depth first so the
+         // parent of an entry is always the last directory seen one level up
+         List<Dir> parents = new ArrayList<>();
+         parents.add(root);
+         while (treeWalk.next()) {
+            int depth = treeWalk.getDepth();
+            Dir parent = parents.get(depth);
+            if (treeWalk.isSubtree()) {
+               Dir dir = new Dir(treeWalk.getPathString());
+               parent.dirs.add(dir);
+               if (parents.size() > depth + 1) {
+                  parents.set(depth + 1, dir);
+               } else {
+                  parents.add(dir);
+               }
+               treeWalk.enterSubtree();
+            } else if ((treeWalk.getRawMode(0) & FileMode.TYPE_MASK) == FileMode.TYPE_FILE) {
+               parent.files.add(new Target(treeWalk.getPathString(), treeWalk.getObjectId(0)));
+            }
+         }
+         return new BlameTargets(commit.copy(), root);
+      }
+   }
+
+   /**
+    * Arranges a list of files into a directory tree, for blaming a selection of
+    * files from a commit.
+    *
+    * @param commitId the commit the files are blamed from
+    * @param files    the files to blame
+    * @return the arranged targets
+    */
+   static BlameTargets fromPaths(ObjectId commitId, List<Target> files) {
+      Dir root = new Dir("");
+      Map<String, Dir> dirs = new HashMap<>();
+      dirs.put("", root);
+      for (Target file : files) {
+         getOrCreateDir(dirs, parentPath(file.path)).files.add(file);
+      }
+      return new BlameTargets(commitId, root);
+   }
+
+   private static int countFiles(Dir dir) {
+      int count = dir.files.size();
+      for (Dir child : dir.dirs) {
+         count += countFiles(child);
+      }
+      return count;
+   }
+
+   private static Dir getOrCreateDir(Map<String, Dir> dirs, String path) {
+      Dir dir = dirs.get(path);
+      if (dir == null) {
+         dir = new Dir(path);
+         getOrCreateDir(dirs, parentPath(path)).dirs.add(dir);
+         dirs.put(path, dir);
+      }
+      return dir;
+   }
+
+   /**
+    * @param path a repository-relative path
+    * @return the path of the directory containing the path, or "" for the root
+    */
+   static String parentPath(String path) {
+      int slash = path.lastIndexOf('/');
+      return slash < 0 ? "" : path.substring(0, slash);
+   }
+
+   private static String relativePath(String rootPath, File file) {
+      return file.toString().substring(rootPath.length() + 1).replace("\\", "/");
+   }
+
+   private final ObjectId commitId;
+
+   private final Dir root;
+
+   BlameTargets(ObjectId commitId, Dir root) {
+      this.commitId = commitId;
+      this.root = root;
+   }
+
+   /**
+    * @return the commit the targets were listed from, or null if they were listed
+    *         from the working directory
+    */
+   public ObjectId getCommitId() {
+      return commitId;
+   }
+
+   /**
+    * @return the number of files to blame
+    */
+   public int getFileCount() {
+      return countFiles(root);
+   }
+
+   Dir getRoot() {
+      return root;
+   }
+
+}
@@ -0,0 +1,168 @@
+package my.git.stats;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import my.git.stats.LinesPerAuthor.DirBlameResult;
+import my.git.stats.LinesPerAuthor.FileBlameResult;
+
+/**
+ * The lines per author of every directory of a {@link LinesPerAuthor} result,
+ * including everything below it, for reporting ownership by subtree.
+ * <p>
+ * The totals are computed in one bottom-up pass over the result tree. Each
+ * directory is summed into a dense array of totals indexed by author id, with
+ * one array per tree depth reused for every directory at that depth. Only the
+ * authors that were touched are reset afterwards. The non-zero totals of each
+ * directory are then appended to flat arrays of author ids and line counts,
+ * sorted by author id, so the whole rollup takes three arrays plus an index of
+ * directory paths. Queries read those arrays and never walk the tree again.
+ */
+class DirectoryRollup {
+
+   /**
+    * Adds up the totals of every directory of a result.
+    *
+    * @param result    the result tree
+    * @param authorIds the ids the result is counted under
+    * @return the totals of every directory
+    */
+   static DirectoryRollup of(DirBlameResult result, AuthorIds authorIds) {
+      DirectoryRollup rollup = new DirectoryRollup(authorIds);
+      rollup.rollUp(result, 0);
+      return rollup;
+   }
+
+   private final AuthorIds authorIds;
+   private final int authorCount;
+
+   /** The totals of the directory being summed at each depth. */
+   private final List<long[]> levelTotals = new ArrayList<>();
+   /** The authors with non-zero totals in {@link #levelTotals}, per depth. */
+   private final List<int[]> levelTouched = new ArrayList<>();
+   private final List<Integer> levelTouchedCounts = new ArrayList<>();
+
+   private final Map<String, Integer> dirIndex = new LinkedHashMap<>();
+   /** Where the totals of each directory start, and how many authors they have. */
+   private int[] starts = new int[16];
+   private int[] lengths = new int[16];
+   private int[] ids = new int[64];
+   private long[] lines = new long[64];
+   private int size;
+
+   private DirectoryRollup(AuthorIds authorIds) {
+      this.authorIds = authorIds;
+      this.authorCount = authorIds.size();
+   }
+
+   private void add(int depth, int id, long count) {
+      long[] totals = levelTotals.get(depth);
+      if (totals[id] == 0) {
+         int touchedCount = levelTouchedCounts.get(depth);
+         levelTouched.get(depth)[touchedCount] = id;
+         levelTouchedCounts.set(depth, touchedCount + 1);
+      }
+      totals[id] += count;
+   }
+
+   /**
+    * @return the paths of all directories, parents before their children
+    */
+   List<String> getDirectories() {
+      return Collections.unmodifiableList(new ArrayList<>(dirIndex.keySet()));
+   }
+
+   /**
+    * Returns the lines of one author below a directory.
+    *
+    * @param dirPath the path of the directory, "" for the root
+    * @param author  the author name
+    * @return the number of lines, 0 if the author or directory is unknown
+    */
+   long getLines(String dirPath, String author) {
+      Integer dir = dirIndex.get(dirPath);
+      if (dir == null) {
+         return 0;
+      }
+      for (int i = starts[dir]; i < starts[dir] + lengths[dir]; i++) {
+         if (authorIds.getName(ids[i]).equals(author)) {
+            return lines[i];
+         }
+      }
+      return 0;
+   }
+
+   /**
+    * Returns the lines per author below a directory.
+    *
+    * @param dirPath the path of the directory, "" for the root
+    * @return the lines per author, or an empty map if the directory is unknown
+    */
+   Map<String, Long> getTotals(String dirPath) {
+      Map<String, Long> totals = new HashMap<>();
+      Integer dir = dirIndex.get(dirPath);
+      if (dir != null) {
+         for (int i = starts[dir]; i < starts[dir] + lengths[dir]; i++) {
+            totals.put(authorIds.getName(ids[i]), lines[i]);
+         }
+      }
+      return totals;
+   }
+
+   private void rollUp(DirBlameResult dir, int depth) {
+      if (levelTotals.size() == depth) {
+         levelTotals.add(new long[authorCount]);
+         levelTouched.add(new int[authorCount]);
+         levelTouchedCounts.add(0);
+      }
+      // index the directory before its children, so parents are listed first
+      int index = dirIndex.size();
+      dirIndex.put(dir.path, index);
+      if (index == starts.length) {
+         starts = Arrays.copyOf(starts, index * 2);
+         lengths = Arrays.copyOf(lengths, index * 2);
+      }
+
+      for (FileBlameResult file : dir.childFileResults) {
+         AuthorCounts counts = file.linesPerAuthor;
+         for (int i = 0; i < counts.size(); i++) {
+            add(depth, counts.getId(i), counts.getLines(i));
+         }
+      }
+      for (DirBlameResult child : dir.childDirResults) {
+         int childIndex = dirIndex.size();
+         rollUp(child, depth + 1);
+         for (int i = starts[childIndex]; i < starts[childIndex] + lengths[childIndex]; i++) {
+            add(depth, ids[i], lines[i]);
+         }
+      }
+      store(index, depth);
+   }
+
+   private void store(int index, int depth) {
+      long[] totals = levelTotals.get(depth);
+      int[] touched = levelTouched.get(depth);
+      int touchedCount = levelTouchedCounts.get(depth);
+      Arrays.sort(touched, 0, touchedCount);
+      starts[index] = size;
+      lengths[index] = touchedCount;
+      for (int i = 0; i < touchedCount; i++) {
+         int id = touched[i];
+         if (size == ids.length) {
+            ids = Arrays.copyOf(ids, size * 2);
+            lines = Arrays.copyOf(lines, size * 2);
+         }
+         ids[size] = id;
+         lines[size] = totals[id];
+         size++;
+         totals[id] = 0;
+      }
+      levelTouchedCounts.set(depth, 0);
+   }
+
+}
@@ -0,0 +1,565 @@
+package my.git.stats;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.jgit.diff.DiffAlgorithm;
+import org.eclipse.jgit.diff.Edit;
+import org.eclipse.jgit.diff.EditList;
+import org.eclipse.jgit.diff.RawText;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectLoader;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevSort;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.revwalk.filter.CommitTimeRevFilter;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.filter.TreeFilter;
+
+import my.git.stats.LinesPerAuthor.DirBlameResult;
+import my.git.stats.LinesPerAuthor.FileBlameResult;
+
+/**
+ * An alternative to running blame on every file. The commit history is walked
+ * once, oldest commit first, and the owner of every line is carried forward
+ * through the diff of each commit against its parents: lines that match a line
+ * of a parent keep that line's owner, all other lines are owned by the author of
+ * the commit. Every commit is read exactly once instead of once per file that it
+ * touches.
+ * <p>
+ * A file that appears at a new path with content seen before keeps the owners of
+ * that content, so a file that is renamed without changes keeps its owners, as
+ * with blame. Unlike blame, renames are not detected by similarity, so a file
+ * that is renamed and changed in the same commit, or lines moved between files,
+ * are owned by the author of that commit, while an unchanged copy of a file keeps
+ * the owners of the original.
+ * <p>
+ * The history is walked twice. The first walk only compares trees and counts
+ * how often the owners of every file version will be looked up, so the second
+ * walk, which reads and diffs the files, can drop the owners of a version after
+ * its last lookup and only keeps the owners of the targets to the end. If the
+ * context has a {@link BlameFilter}, paths it excludes are not replayed, and
+ * versions above its size cap or with binary content are not read or tracked, so
+ * their lines, and lines carried over from them, are owned by the commit that
+ * next changes the file.
+ * <p>
+ * If the context has a history boundary, the walks stop at the first commit
+ * older than the boundary, like {@code git log --since}, and the commits before
+ * it are not read at all. The files in the trees of the boundary commits, the
+ * parents of the oldest walked commits, are seeded with all their lines owned
+ * by the boundary, as blame reports them.
+ */
+public class HistoryReplay {
+
+   /**
+    * A blob at a path. Line owners are tracked per file version rather than per
+    * blob, because the same content at two paths can have a different history.
+    */
+   private static final class FileVersion {
+      final String path;
+      final ObjectId blobId;
+
+      FileVersion(String path, ObjectId blobId) {
+         this.path = path;
+         this.blobId = blobId;
+      }
+
+      @Override
+      public boolean equals(Object obj) {
+         if (this == obj)
+            return true;
+         if (!(obj instanceof FileVersion))
+            return false;
+         FileVersion other = (FileVersion) obj;
+         return blobId.equals(other.blobId) && path.equals(other.path);
+      }
+
+      @Override
+      public int hashCode() {
+         return blobId.hashCode() * 31 + path.hashCode();
+      }
+   }
+
+   /**
+    * Visits the files a commit adds or changes, see {@link HistoryReplay#walk}.
+    */
+   private interface ChangeVisitor {
+      /**
+       * @param commit      the commit
+       * @param treeWalk    positioned on a changed file, with the trees of the
+       *                    parents of the commit followed by its own tree
+       * @param parentCount the number of parents of the commit
+       */
+      void visit(RevCommit commit, TreeWalk treeWalk, int parentCount) throws IOException;
+   }
+
+   /** The owner of lines last changed before the history boundary. */
+   private static final int BOUNDARY_OWNER = Integer.MAX_VALUE;
+
+   /**
+    * The owners of a file version in the tree of a boundary commit, whose lines
+    * are all owned by the boundary. The number of lines is only known once the
+    * version is read, which is why it is not a regular run.
+    */
+   private static final int[] BOUNDARY_RUNS = { BOUNDARY_OWNER };
+
+   /**
+    * Attributes the lines of every target to its authors by replaying the
+    * history of the commit the targets were listed from.
+    *
+    * @param repository the repository to read
+    * @param targets    the files to attribute, which must be listed from a
+    *                   revision
+    * @param context    the author resolution and counters to use
+    * @return the lines per author of the targets, in the same shape as
+    *         {@link LinesPerAuthor#countFiles}
+    * @throws IOException if the history cannot be read
+    */
+   static DirBlameResult countFiles(Repository repository, BlameTargets targets,
+         BlameContext context) throws IOException {
+      if (targets.getCommitId() == null) {
+         throw new IllegalArgumentException("History replay needs targets listed from a revision");
+      }
+      HistoryReplay replay = new HistoryReplay(repository, context);
+      replay.retainTargets(targets.getRoot());
+      try (ObjectReader reader = repository.newObjectReader()) {
+         replay.replay(reader, targets.getCommitId());
+         return replay.countDir(reader, targets.getRoot(), context.counts);
+      }
+   }
+
+   /**
+    * Expands run-length encoded owners into one owner per line.
+    */
+   private static int[] expand(int[] runs, int lineCount) {
+      int[] owners = new int[lineCount];
+      if (runs == BOUNDARY_RUNS) {
+         Arrays.fill(owners, BOUNDARY_OWNER);
+         return owners;
+      }
+      int line = 0;
+      for (int i = 0; i < runs.length; i += 2) {
+         Arrays.fill(owners, line, line + runs[i + 1], runs[i]);
+         line += runs[i + 1];
+      }
+      return owners;
+   }
+
+   /**
+    * Stores owners as (owner, run length) pairs. Most files consist of a few long
+    * runs of lines by the same author, so this keeps the ownership of every blob
+    * in the history small.
+    */
+   private static int[] compress(int[] owners) {
+      int runCount = 0;
+      for (int i = 0; i < owners.length; i++) {
+         if (i == 0 || owners[i] != owners[i - 1]) {
+            runCount++;
+         }
+      }
+      int[] runs = new int[runCount * 2];
+      int run = -2;
+      for (int i = 0; i < owners.length; i++) {
+         if (i == 0 || owners[i] != owners[i - 1]) {
+            run += 2;
+            runs[run] = owners[i];
+         }
+         runs[run + 1]++;
+      }
+      return runs;
+   }
+
+   private static boolean isFile(TreeWalk treeWalk, int tree) {
+      return (treeWalk.getRawMode(tree) & FileMode.TYPE_MASK) == FileMode.TYPE_FILE;
+   }
+
+   private static boolean isFileInParent(TreeWalk treeWalk, int parentCount) {
+      for (int p = 0; p < parentCount; p++) {
+         if (isFile(treeWalk, p)) {
+            return true;
+         }
+      }
+      return false;
+   }
+
+   private final Repository repository;
+   private final BlameContext context;
+   private final DiffAlgorithm diffAlgorithm;
+
+   /**
+    * The run-length encoded line owners of the file versions that will still be
+    * looked up.
+    */
+   private final Map<FileVersion, int[]> fileOwners = new HashMap<>();
+
+   /**
+    * The line owners of the first file version seen with each blob that will
+    * still be looked up for a rename.
+    */
+   private final Map<ObjectId, int[]> blobOwners = new HashMap<>();
+
+   /** The number of lookups left of every file version. */
+   private final Map<FileVersion, Integer> versionUses = new HashMap<>();
+
+   /** The number of rename lookups left of every blob. */
+   private final Map<ObjectId, Integer> blobUses = new HashMap<>();
+
+   /** The commit whose owner was last interned, and that owner. */
+   private RevCommit ownerCommit;
+   private int owner;
+
+   private HistoryReplay(Repository repository, BlameContext context) {
+      this.repository = repository;
+      this.context = context;
+      this.diffAlgorithm = context.profile.getDiffAlgorithm();
+   }
+
+   private DirBlameResult countDir(ObjectReader reader, BlameTargets.Dir dir,
+         BlameCounts counts) throws IOException {
+      List<FileBlameResult> fileBlames = new ArrayList<>();
+      List<DirBlameResult> dirBlames = new ArrayList<>();
+
+      for (BlameTargets.Dir child : dir.dirs) {
+         DirBlameResult result = countDir(reader, child, counts);
+         if (!result.childDirResults.isEmpty() || !result.childFileResults.isEmpty()) {
+            dirBlames.add(result);
+         }
+      }
+
+      for (BlameTargets.Target target : dir.files) {
+         int[] runs = fileOwners.get(new FileVersion(target.path, target.blobId));
+         if (runs == BOUNDARY_RUNS) {
+            // unchanged since the boundary
+            RawText text = readText(reader, target.blobId);
+            runs = text == null ? null : new int[] { BOUNDARY_OWNER, text.size() };
+         }
+         if (runs == null) {
+            continue;
+         }
+         AuthorCounts linesPerAuthor = new AuthorCounts();
+         for (int i = 0; i < runs.length; i += 2) {
+            if (runs[i] == BOUNDARY_OWNER) {
+               linesPerAuthor.add(context.authorIds.intern(LinesPerAuthor.BOUNDARY_AUTHOR),
+                     runs[i + 1]);
+            } else {
+               linesPerAuthor.add(runs[i] / LineAges.BUCKET_COUNT, runs[i + 1],
+                     runs[i] % LineAges.BUCKET_COUNT);
+            }
+            counts.addLines(runs[i + 1]);
+         }
+         counts.addFile();
+         FileBlameResult result = new FileBlameResult(target.path, linesPerAuthor);
+         if (!context.stream(result)) {
+            fileBlames.add(result);
+         }
+      }
+
+      return new DirBlameResult(dir.path, fileBlames, dirBlames);
+   }
+
+   /**
+    * Returns the owner of the lines written by a commit, which is its author id
+    * and the age bucket of its lines packed into one int.
+    */
+   private int internOwner(RevCommit commit) {
+      PersonIdent ident = commit.getAuthorIdent();
+      int authorId = context.authorIds
+            .intern(context.resolveName(ident.getName(), ident.getEmailAddress()));
+      return authorId * LineAges.BUCKET_COUNT
+            + LineAges.bucketOf(commit.getCommitTime(), context.referenceTime);
+   }
+
+   /**
+    * Keeps the owners of the targets until the end of the replay.
+    */
+   private void retainTargets(BlameTargets.Dir dir) {
+      for (BlameTargets.Dir child : dir.dirs) {
+         retainTargets(child);
+      }
+      for (BlameTargets.Target target : dir.files) {
+         versionUses.merge(new FileVersion(target.path, target.blobId), 1, Integer::sum);
+      }
+   }
+
+   /**
+    * Replays the history of a commit. Every changed file of every commit is
+    * recorded in the metrics of the context as a file, so the progress and
+    * latencies of a replay describe file versions rather than targets.
+    */
+   private void replay(ObjectReader reader, ObjectId commitId) throws IOException {
+      int[] changes = new int[1];
+      Set<ObjectId> boundaryTrees = walk(reader, commitId, false,
+            (commit, treeWalk, parentCount) -> {
+               countUses(treeWalk, parentCount);
+               changes[0]++;
+            });
+      seedBoundary(reader, boundaryTrees);
+      BlameMetrics metrics = context.metrics;
+      metrics.addQueuedFiles(changes[0]);
+      walk(reader, commitId, true, (commit, treeWalk, parentCount) -> {
+         long start = System.nanoTime();
+         metrics.fileStarted();
+         try {
+            replayChange(reader, commit, treeWalk, parentCount);
+         } finally {
+            String version = treeWalk.getPathString() + " in " + commit.abbreviate(8).name();
+            metrics.fileFinished(version, System.nanoTime() - start);
+         }
+      });
+   }
+
+   /**
+    * Walks the history of a commit, parents before children, and visits every
+    * file a commit adds or changes in the paths the filter of the context
+    * includes. Both walks visit the same files in the same order.
+    *
+    * @return the trees of the commits older than the history boundary of the
+    *         context that the walk stopped at
+    */
+   private Set<ObjectId> walk(ObjectReader reader, ObjectId commitId, boolean readAuthors,
+         ChangeVisitor visitor) throws IOException {
+      BlameFilter filter = context.filter;
+      Set<ObjectId> boundaryTrees = new HashSet<>();
+      try (RevWalk revWalk = new RevWalk(reader);
+            TreeWalk treeWalk = new TreeWalk(reader)) {
+         // parents before children, so the owners of every parent blob are known
+         revWalk.sort(RevSort.TOPO);
+         revWalk.sort(RevSort.REVERSE, true);
+         revWalk.setRetainBody(readAuthors);
+         RevCommit startCommit = revWalk.parseCommit(commitId);
+         revWalk.markStart(startCommit);
+         if (context.sinceTime > 0) {
+            // stops at the first commit older than the boundary
+            revWalk.setRevFilter(CommitTimeRevFilter.after(context.sinceTime * 1000));
+            if (startCommit.getCommitTime() < context.sinceTime) {
+               boundaryTrees.add(startCommit.getTree().copy());
+            }
+         }
+         treeWalk.setRecursive(true);
+
+         RevCommit commit;
+         while ((commit = revWalk.next()) != null) {
+            int parentCount = commit.getParentCount();
+            treeWalk.reset();
+            for (RevCommit parent : commit.getParents()) {
+               treeWalk.addTree(parent.getTree());
+               if (parent.getCommitTime() < context.sinceTime) {
+                  boundaryTrees.add(parent.getTree().copy());
+               }
+            }
+            treeWalk.addTree(commit.getTree());
+            treeWalk.setFilter(parentCount > 0 ? TreeFilter.ANY_DIFF : TreeFilter.ALL);
+
+            while (treeWalk.next()) {
+               if (isFile(treeWalk, parentCount)
+                     && (filter == null || filter.matchesPath(treeWalk.getPathString()))) {
+                  visitor.visit(commit, treeWalk, parentCount);
+               }
+            }
+            if (readAuthors) {
+               commit.disposeBody();
+            }
+         }
+      }
+      return boundaryTrees;
+   }
+
+   /**
+    * Owns all lines of the file versions in the trees of the boundary commits by
+    * the boundary, for the versions and blobs the replay looks up.
+    */
+   private void seedBoundary(ObjectReader reader, Set<ObjectId> boundaryTrees)
+         throws IOException {
+      BlameFilter filter = context.filter;
+      try (TreeWalk treeWalk = new TreeWalk(reader)) {
+         treeWalk.setRecursive(true);
+         for (ObjectId tree : boundaryTrees) {
+            treeWalk.reset(tree);
+            while (treeWalk.next()) {
+               if (!isFile(treeWalk, 0)
+                     || (filter != null && !filter.matchesPath(treeWalk.getPathString()))) {
+                  continue;
+               }
+               ObjectId blobId = treeWalk.getObjectId(0);
+               FileVersion version = new FileVersion(treeWalk.getPathString(), blobId);
+               if (versionUses.containsKey(version)) {
+                  fileOwners.put(version, BOUNDARY_RUNS);
+               }
+               if (blobUses.containsKey(blobId)) {
+                  blobOwners.put(blobId, BOUNDARY_RUNS);
+               }
+            }
+         }
+      }
+   }
+
+   /**
+    * Counts the lookups {@link #replayChange} may make for a changed file: its
+    * own version, its blob if the path is new, and the versions of its parents.
+    */
+   private void countUses(TreeWalk treeWalk, int parentCount) {
+      String path = treeWalk.getPathString();
+      ObjectId blobId = treeWalk.getObjectId(parentCount);
+      versionUses.merge(new FileVersion(path, blobId), 1, Integer::sum);
+      if (!isFileInParent(treeWalk, parentCount)) {
+         blobUses.merge(blobId, 1, Integer::sum);
+      }
+      for (int p = 0; p < parentCount; p++) {
+         if (isFile(treeWalk, p)) {
+            versionUses.merge(new FileVersion(path, treeWalk.getObjectId(p)), 1, Integer::sum);
+         }
+      }
+   }
+
+   /**
+    * Works out the owners of a changed file, then releases the lookups counted
+    * for it by {@link #countUses}, dropping the owners that are not looked up
+    * again.
+    */
+   private void replayChange(ObjectReader reader, RevCommit commit, TreeWalk treeWalk,
+         int parentCount) throws IOException {
+      String path = treeWalk.getPathString();
+      ObjectId blobId = treeWalk.getObjectId(parentCount);
+      FileVersion version = new FileVersion(path, blobId);
+      boolean inParent = isFileInParent(treeWalk, parentCount);
+      if (!fileOwners.containsKey(version)) {
+         int[] runs = null;
+         if (!inParent) {
+            // the same content at another path, most likely a rename
+            runs = blobOwners.get(blobId);
+         }
+         if (runs == null) {
+            runs = replayFile(reader, treeWalk, version, commit);
+         }
+         if (runs != null) {
+            fileOwners.put(version, runs);
+            if (blobUses.containsKey(blobId)) {
+               blobOwners.putIfAbsent(blobId, runs);
+            }
+         }
+      }
+
+      for (int p = 0; p < parentCount; p++) {
+         if (isFile(treeWalk, p)) {
+            release(new FileVersion(path, treeWalk.getObjectId(p)));
+         }
+      }
+      if (!inParent && blobUses.computeIfPresent(blobId, HistoryReplay::decrement) == null) {
+         blobOwners.remove(blobId);
+      }
+      release(version);
+   }
+
+   private static Integer decrement(Object key, Integer uses) {
+      return uses == 1 ? null : uses - 1;
+   }
+
+   private void release(FileVersion version) {
+      if (versionUses.computeIfPresent(version, HistoryReplay::decrement) == null) {
+         fileOwners.remove(version);
+      }
+   }
+
+   /**
+    * Reads the text of a blob, unless the filter of the context skips it for its
+    * size or binary content. Large blobs are checked for binary content before
+    * they are read in full.
+    *
+    * @return the text, or null if the blob is skipped
+    */
+   private RawText readText(ObjectReader reader, ObjectId blobId) throws IOException {
+      ObjectLoader loader = reader.open(blobId, Constants.OBJ_BLOB);
+      BlameFilter filter = context.filter;
+      if (filter == null) {
+         return new RawText(loader.getCachedBytes(Integer.MAX_VALUE));
+      }
+      if (filter.getMaxFileSize() > 0 && loader.getSize() > filter.getMaxFileSize()) {
+         return null;
+      }
+      if (loader.isLarge()) {
+         try (InputStream in = loader.openStream()) {
+            if (BlameFilter.isBinary(in)) {
+               return null;
+            }
+         }
+      }
+      byte[] content = loader.getCachedBytes(Integer.MAX_VALUE);
+      return RawText.isBinary(content) ? null : new RawText(content);
+   }
+
+   /**
+    * @return the owners of the lines of a file version, or null if the version
+    *         is skipped
+    */
+   private int[] replayFile(ObjectReader reader, TreeWalk treeWalk, FileVersion version,
+         RevCommit commit) throws IOException {
+      int parentCount = treeWalk.getTreeCount() - 1;
+      RawText text = readText(reader, version.blobId);
+      if (text == null) {
+         return null;
+      }
+      int[] owners = new int[text.size()];
+      Arrays.fill(owners, -1);
+
+      // earlier parents take precedence, as they do for blame
+      for (int p = 0; p < parentCount; p++) {
+         if (!isFile(treeWalk, p)) {
+            continue;
+         }
+         ObjectId parentBlobId = treeWalk.getObjectId(p);
+         int[] parentRuns = fileOwners.get(new FileVersion(version.path, parentBlobId));
+         if (parentRuns == null) {
+            continue;
+         }
+         RawText parentText = readText(reader, parentBlobId);
+         if (parentText == null) {
+            continue;
+         }
+         int[] parentOwners = expand(parentRuns, parentText.size());
+         EditList edits = diffAlgorithm.diff(context.profile.getTextComparator(), parentText,
+               text);
+
+         // the lines between two edits are unchanged
+         int a = 0;
+         int b = 0;
+         for (Edit edit : edits) {
+            for (; b < edit.getBeginB(); a++, b++) {
+               if (owners[b] < 0) {
+                  owners[b] = parentOwners[a];
+               }
+            }
+            a = edit.getEndA();
+            b = edit.getEndB();
+         }
+         for (; b < owners.length; a++, b++) {
+            if (owners[b] < 0) {
+               owners[b] = parentOwners[a];
+            }
+         }
+      }
+
+      for (int i = 0; i < owners.length; i++) {
+         if (owners[i] < 0) {
+            if (commit != ownerCommit) {
+               ownerCommit = commit;
+               owner = internOwner(commit);
+            }
+            owners[i] = owner;
+         }
+      }
+      return compress(owners);
+   }
+
+}
@@ -0,0 +1,334 @@
+package my.git.stats;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+import org.eclipse.jgit.diff.DiffEntry;
+import org.eclipse.jgit.diff.DiffEntry.ChangeType;
+import org.eclipse.jgit.errors.MissingObjectException;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevTree;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.filter.PathFilterGroup;
+import org.eclipse.jgit.treewalk.filter.TreeFilter;
+
+import my.git.stats.LinesPerAuthor.DirBlameResult;
+import my.git.stats.LinesPerAuthor.FileBlameResult;
+import my.git.util.AtomicFiles;
+
+/**
+ * Updates the {@link LinesPerAuthor} result of one commit to the result of a
+ * later commit that descends from it. The files that differ between the two
+ * commits, and the files that any commit in between changed, are blamed again,
+ * and deleted files are dropped from the result. A file that was changed and
+ * then reverted has the same content in both commits, but its lines are now
+ * attributed to the reverting commit, so it is blamed again as well. The other
+ * files keep their previous result, because no commit between the two changed
+ * them and their blame history is the same in both commits.
+ */
+class IncrementalBlame {
+
+   /**
+    * A saved result together with the commit and options it was computed for.
+    */
+   static class Snapshot {
+      final ObjectId commitId;
+      /** A description of the options the result was computed with. */
+      final String optionsKey;
+      final DirBlameResult result;
+
+      Snapshot(ObjectId commitId, String optionsKey, DirBlameResult result) {
+         this.commitId = commitId;
+         this.optionsKey = optionsKey;
+         this.result = result;
+      }
+   }
+
+   /**
+    * The files that changed between two commits.
+    */
+   static class Changes {
+      /** The paths whose previous results are no longer valid. */
+      final List<String> removedPaths;
+      /** The added and modified files, to be blamed in the later commit. */
+      final BlameTargets targets;
+
+      Changes(List<String> removedPaths, BlameTargets targets) {
+         this.removedPaths = removedPaths;
+         this.targets = targets;
+      }
+   }
+
+   private static final int MAGIC = 0x4c504153;
+   private static final int VERSION = 3;
+
+   /**
+    * Applies changes to a previous result. The previous results of all removed
+    * paths are dropped, then the newly blamed files are added.
+    *
+    * @param previous the result for the earlier commit, which is modified
+    * @param changes  the changes between the two commits
+    * @param blamed   the result of blaming {@link Changes#targets}
+    * @return the result for the later commit
+    */
+   static DirBlameResult apply(DirBlameResult previous, Changes changes, DirBlameResult blamed) {
+      for (String path : changes.removedPaths) {
+         removeFile(previous, path);
+      }
+      addFiles(previous, blamed);
+      return previous;
+   }
+
+   private static void addFiles(DirBlameResult root, DirBlameResult blamed) {
+      for (FileBlameResult file : blamed.childFileResults) {
+         putFile(root, file);
+      }
+      for (DirBlameResult dir : blamed.childDirResults) {
+         addFiles(root, dir);
+      }
+   }
+
+   /**
+    * Finds the files that changed between two commits. Renames are treated as a
+    * deletion and an addition, and files that stopped being regular files are
+    * treated as deleted. Files that are the same in both commits but were
+    * changed by a commit in between count as modified.
+    *
+    * @param repository the repository the commits are in
+    * @param oldCommit  the earlier commit
+    * @param newCommit  the later commit, which must descend from the earlier one
+    * @return the changes between the commits
+    * @throws IOException if the commits cannot be read
+    */
+   static Changes diff(Repository repository, ObjectId oldCommit, ObjectId newCommit)
+         throws IOException {
+      List<String> removedPaths = new ArrayList<>();
+      List<BlameTargets.Target> changedFiles = new ArrayList<>();
+      Set<String> changedPaths = new HashSet<>();
+      try (RevWalk revWalk = new RevWalk(repository);
+            TreeWalk treeWalk = new TreeWalk(repository)) {
+         RevTree newTree = revWalk.parseCommit(newCommit).getTree();
+         treeWalk.addTree(revWalk.parseCommit(oldCommit).getTree());
+         treeWalk.addTree(newTree);
+         treeWalk.setRecursive(true);
+         for (DiffEntry entry : DiffEntry.scan(treeWalk)) {
+            if (entry.getChangeType() != ChangeType.ADD) {
+               removedPaths.add(entry.getOldPath());
+            }
+            if (entry.getChangeType() != ChangeType.DELETE
+                  && (entry.getNewMode().getBits() & FileMode.TYPE_MASK) == FileMode.TYPE_FILE) {
+               changedFiles.add(new BlameTargets.Target(entry.getNewPath(),
+                     entry.getNewId().toObjectId()));
+            }
+            changedPaths.add(entry.getOldPath());
+            changedPaths.add(entry.getNewPath());
+         }
+
+         // files changed in between but the same in both commits, such as reverts
+         Set<String> touchedPaths = touchedPaths(repository, revWalk, oldCommit, newCommit);
+         touchedPaths.removeAll(changedPaths);
+         if (!touchedPaths.isEmpty()) {
+            treeWalk.reset(newTree);
+            treeWalk.setFilter(PathFilterGroup.createFromStrings(touchedPaths));
+            while (treeWalk.next()) {
+               if ((treeWalk.getRawMode(0) & FileMode.TYPE_MASK) == FileMode.TYPE_FILE) {
+                  removedPaths.add(treeWalk.getPathString());
+                  changedFiles.add(new BlameTargets.Target(treeWalk.getPathString(),
+                        treeWalk.getObjectId(0)));
+               }
+            }
+         }
+      }
+      return new Changes(removedPaths, BlameTargets.fromPaths(newCommit.copy(), changedFiles));
+   }
+
+   /**
+    * @return the paths that a commit reachable from the later commit but not
+    *         from the earlier one changed compared to any of its parents
+    */
+   private static Set<String> touchedPaths(Repository repository, RevWalk revWalk,
+         ObjectId oldCommit, ObjectId newCommit) throws IOException {
+      Set<String> paths = new HashSet<>();
+      revWalk.reset();
+      revWalk.markStart(revWalk.parseCommit(newCommit));
+      revWalk.markUninteresting(revWalk.parseCommit(oldCommit));
+      try (TreeWalk treeWalk = new TreeWalk(repository)) {
+         treeWalk.setRecursive(true);
+         for (RevCommit commit : revWalk) {
+            treeWalk.reset();
+            for (RevCommit parent : commit.getParents()) {
+               treeWalk.addTree(revWalk.parseCommit(parent).getTree());
+            }
+            treeWalk.addTree(commit.getTree());
+            treeWalk.setFilter(commit.getParentCount() > 0 ? TreeFilter.ANY_DIFF
+                  : TreeFilter.ALL);
+            while (treeWalk.next()) {
+               paths.add(treeWalk.getPathString());
+            }
+         }
+      }
+      return paths;
+   }
+
+   /**
+    * Returns whether a commit descends from another one, which a saved result
+    * must be for it to be updated.
+    *
+    * @param repository the repository the commits are in
+    * @param oldCommit  the commit of the saved result
+    * @param newCommit  the commit to update the result to
+    * @return true if the later commit descends from or is the earlier one,
+    *         false if it does not or the earlier commit no longer exists
+    * @throws IOException if the commits cannot be read
+    */
+   static boolean isAncestor(Repository repository, ObjectId oldCommit, ObjectId newCommit)
+         throws IOException {
+      try (RevWalk revWalk = new RevWalk(repository)) {
+         return revWalk.isMergedInto(revWalk.parseCommit(oldCommit),
+               revWalk.parseCommit(newCommit));
+      } catch (MissingObjectException e) {
+         return false;
+      }
+   }
+
+   private static DirBlameResult findDir(DirBlameResult root, String path, boolean create) {
+      if (path.isEmpty()) {
+         return root;
+      }
+      DirBlameResult parent = findDir(root, BlameTargets.parentPath(path), create);
+      if (parent == null) {
+         return null;
+      }
+      for (DirBlameResult dir : parent.childDirResults) {
+         if (dir.path.equals(path)) {
+            return dir;
+         }
+      }
+      if (!create) {
+         return null;
+      }
+      DirBlameResult dir = new DirBlameResult(path, new ArrayList<>(), new ArrayList<>());
+      parent.childDirResults.add(dir);
+      return dir;
+   }
+
+   /**
+    * Reads a result saved by {@link #save}.
+    *
+    * @param file          the file to read
+    * @param authorIds     the ids to count the saved authors under
+    * @param referenceTime the time the ages of the lines are measured from, in
+    *                      seconds since the epoch
+    * @return the saved result, or null if the file does not exist or was saved
+    *         in an older format
+    * @throws IOException if the file cannot be read
+    */
+   static Snapshot load(File file, AuthorIds authorIds, long referenceTime)
+         throws IOException {
+      if (!file.isFile()) {
+         return null;
+      }
+      // a result of an older format is blamed again
+      return AtomicFiles.read(file, MAGIC, VERSION, "a saved LinesPerAuthor result", in -> {
+         byte[] rawId = new byte[20];
+         in.readFully(rawId);
+         ObjectId commitId = ObjectId.fromRaw(rawId);
+         String optionsKey = in.readUTF();
+         DirBlameResult root = new DirBlameResult("", new ArrayList<>(), new ArrayList<>());
+         int fileCount = in.readInt();
+         for (int i = 0; i < fileCount; i++) {
+            String path = in.readUTF();
+            int authorCount = in.readInt();
+            AuthorCounts linesPerAuthor = new AuthorCounts(authorCount);
+            for (int j = 0; j < authorCount; j++) {
+               int id = authorIds.intern(in.readUTF());
+               int lines = in.readInt();
+               linesPerAuthor.add(id, lines, BlameCache.readCommitTimes(in), referenceTime);
+            }
+            putFile(root, new FileBlameResult(path, linesPerAuthor));
+         }
+         return new Snapshot(commitId, optionsKey, root);
+      });
+   }
+
+   private static void putFile(DirBlameResult root, FileBlameResult file) {
+      DirBlameResult dir = findDir(root, BlameTargets.parentPath(file.path), true);
+      dir.childFileResults.removeIf(existing -> existing.path.equals(file.path));
+      dir.childFileResults.add(file);
+   }
+
+   private static void removeFile(DirBlameResult root, String path) {
+      String dirPath = BlameTargets.parentPath(path);
+      DirBlameResult dir = findDir(root, dirPath, false);
+      if (dir == null || !dir.childFileResults.removeIf(file -> file.path.equals(path))) {
+         return;
+      }
+      // drop directories that became empty, the same way a full run leaves them out
+      while (!dirPath.isEmpty() && dir.childFileResults.isEmpty()
+            && dir.childDirResults.isEmpty()) {
+         String emptyPath = dirPath;
+         dirPath = BlameTargets.parentPath(dirPath);
+         dir = findDir(root, dirPath, false);
+         for (Iterator<DirBlameResult> it = dir.childDirResults.iterator(); it.hasNext();) {
+            if (it.next().path.equals(emptyPath)) {
+               it.remove();
+            }
+         }
+      }
+   }
+
+   /**
+    * Saves a result so a later run can update it with {@link #diff} and
+    * {@link #apply}. The commit times of the lines are saved with the counts, so
+    * a later run can put them into its own age buckets. The file is replaced
+    * atomically.
+    *
+    * @param file       the file to write
+    * @param commitId   the commit the result was computed for
+    * @param optionsKey a description of the options the result was computed
+    *                   with, such as {@link BlameContext#getOptionsKey()}
+    * @param result     the result to save
+    * @param authorIds  the ids the result is counted under
+    * @throws IOException if the file cannot be written
+    */
+   static void save(File file, ObjectId commitId, String optionsKey, DirBlameResult result,
+         AuthorIds authorIds) throws IOException {
+      List<FileBlameResult> files = new ArrayList<>();
+      collectFiles(result, files);
+
+      AtomicFiles.write(file, MAGIC, VERSION, out -> {
+         byte[] rawId = new byte[20];
+         commitId.copyRawTo(rawId, 0);
+         out.write(rawId);
+         out.writeUTF(optionsKey);
+         out.writeInt(files.size());
+         for (FileBlameResult fileResult : files) {
+            out.writeUTF(fileResult.path);
+            AuthorCounts linesPerAuthor = fileResult.linesPerAuthor;
+            out.writeInt(linesPerAuthor.size());
+            for (int i = 0; i < linesPerAuthor.size(); i++) {
+               out.writeUTF(authorIds.getName(linesPerAuthor.getId(i)));
+               out.writeInt(linesPerAuthor.getLines(i));
+               BlameCache.writeCommitTimes(out, linesPerAuthor.getCommitTimes(i));
+            }
+         }
+      });
+   }
+
+   private static void collectFiles(DirBlameResult dir, List<FileBlameResult> files) {
+      files.addAll(dir.childFileResults);
+      for (DirBlameResult child : dir.childDirResults) {
+         collectFiles(child, files);
+      }
+   }
+
+}
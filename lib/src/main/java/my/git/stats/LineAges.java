@@ -0,0 +1,98 @@
+package my.git.stats;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The age buckets lines are counted in, by the time of the commit that last
+ * changed them. Ages are measured from a reference time, normally the time of
+ * the blamed commit, so the buckets describe the state of the repository at
+ * that commit rather than at the time of the run.
+ */
+class LineAges {
+
+   /** The number of age buckets. */
+   static final int BUCKET_COUNT = 3;
+
+   /** The names of the buckets, youngest first. */
+   static final String[] BUCKET_NAMES = { "<30d", "<1y", "older" };
+
+   /**
+    * The commit time of lines that are not committed yet, which are as young as
+    * it gets and fall into the youngest bucket for any reference time.
+    */
+   static final int UNCOMMITTED_TIME = Integer.MAX_VALUE;
+
+   private static final int DAY_SECONDS = 24 * 60 * 60;
+
+   private static final long[] BUCKET_LIMITS = { 30L * DAY_SECONDS, 365L * DAY_SECONDS };
+
+   private LineAges() {
+   }
+
+   /**
+    * Returns the bucket of a line.
+    *
+    * @param commitTime    the time of the commit the line comes from, in seconds
+    *                      since the epoch
+    * @param referenceTime the time ages are measured from, in seconds since the
+    *                      epoch
+    * @return the index of the age bucket
+    */
+   static int bucketOf(long commitTime, long referenceTime) {
+      long age = referenceTime - commitTime;
+      for (int bucket = 0; bucket < BUCKET_LIMITS.length; bucket++) {
+         if (age < BUCKET_LIMITS[bucket]) {
+            return bucket;
+         }
+      }
+      return BUCKET_COUNT - 1;
+   }
+
+   /**
+    * Converts age totals indexed by author id and bucket into a map.
+    *
+    * @param ageTotals the lines per age bucket, indexed by author id times
+    *                  {@link #BUCKET_COUNT} plus the bucket
+    * @param authorIds the ids the totals are counted under
+    * @return the lines in each age bucket by author name, for the authors with
+    *         any lines of known age
+    */
+   static Map<String, long[]> byAuthor(long[] ageTotals, AuthorIds authorIds) {
+      Map<String, long[]> ages = new HashMap<>();
+      for (int id = 0; id * BUCKET_COUNT < ageTotals.length; id++) {
+         long[] buckets = Arrays.copyOfRange(ageTotals, id * BUCKET_COUNT,
+               (id + 1) * BUCKET_COUNT);
+         if (Arrays.stream(buckets).sum() > 0) {
+            ages.put(authorIds.getName(id), buckets);
+         }
+      }
+      return ages;
+   }
+
+   /**
+    * Describes the age buckets of one author.
+    *
+    * @param ages  the lines in each bucket
+    * @param lines the total lines of the author, which may include lines whose
+    *              age is not known
+    * @return a description such as "&lt;30d 3, &lt;1y 4, older 0"
+    */
+   static String describe(long[] ages, long lines) {
+      StringBuilder description = new StringBuilder();
+      long known = 0;
+      for (int bucket = 0; bucket < BUCKET_COUNT; bucket++) {
+         if (bucket > 0) {
+            description.append(", ");
+         }
+         description.append(BUCKET_NAMES[bucket]).append(' ').append(ages[bucket]);
+         known += ages[bucket];
+      }
+      if (known < lines) {
+         description.append(", unknown ").append(lines - known);
+      }
+      return description.toString();
+   }
+
+}
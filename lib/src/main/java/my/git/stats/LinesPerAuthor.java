@@ -2,57 +2,110 @@ package my.git.stats;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.file.Files;
-import java.nio.file.LinkOption;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
+import java.util.EnumMap;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
+import java.util.TreeSet;
 
 import javax.swing.JFileChooser;
 
+import org.eclipse.jgit.api.BlameCommand;
 import org.eclipse.jgit.api.Git;
 import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.blame.BlameGenerator;
 import org.eclipse.jgit.blame.BlameResult;
 import org.eclipse.jgit.diff.RawTextComparator;
+import org.eclipse.jgit.errors.RevisionSyntaxException;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
 import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.storage.file.WindowCacheConfig;
 
 public class LinesPerAuthor {
 
+   /**
+    * The author lines are counted under when they were last changed before the
+    * history boundary of a bounded run.
+    */
+   static final String BOUNDARY_AUTHOR = "(before boundary)";
+
    static class DirBlameResult {
-      static void mergeMaps(Map<String, Integer> source, Map<String, Integer> destination) {
-         for (Entry<String, Integer> entry : source.entrySet()) {
-            Integer value = destination.get(entry.getKey());
-            if (value != null) {
-               destination.put(entry.getKey(), entry.getValue() + value);
-            } else {
-               destination.put(entry.getKey(), entry.getValue());
-            }
+      /**
+       * Adds the lines per author of every file below a directory to an array of
+       * totals indexed by author id.
+       */
+      static void addTotals(DirBlameResult dirResult, long[] totals) {
+         for (FileBlameResult file : dirResult.childFileResults) {
+            file.linesPerAuthor.addTo(totals);
          }
-      }
 
-      static Map<String, Integer> sumResults(DirBlameResult dirResult) {
-         Map<String, Integer> map = new HashMap<>();
+         for (DirBlameResult dir : dirResult.childDirResults) {
+            addTotals(dir, totals);
+         }
+      }
 
+      static void addAgeTotals(DirBlameResult dirResult, long[] ageTotals) {
          for (FileBlameResult file : dirResult.childFileResults) {
-            mergeMaps(file.linesPerAuthor, map);
+            file.linesPerAuthor.addAgesTo(ageTotals);
          }
 
          for (DirBlameResult dir : dirResult.childDirResults) {
-            mergeMaps(DirBlameResult.sumResults(dir), map);
+            addAgeTotals(dir, ageTotals);
          }
+      }
+
+      /**
+       * Sums the lines of every author per {@link LineAges age bucket}.
+       *
+       * @return the lines in each age bucket by author name
+       */
+      static Map<String, long[]> sumAges(DirBlameResult dirResult, AuthorIds authorIds) {
+         long[] ageTotals = new long[authorIds.size() * LineAges.BUCKET_COUNT];
+         addAgeTotals(dirResult, ageTotals);
+         return LineAges.byAuthor(ageTotals, authorIds);
+      }
 
+      static long[] sumResults(DirBlameResult dirResult, int authorCount) {
+         long[] totals = new long[authorCount];
+         addTotals(dirResult, totals);
+         return totals;
+      }
+
+      static Map<String, Integer> sumResults(DirBlameResult dirResult, AuthorIds authorIds) {
+         long[] totals = sumResults(dirResult, authorIds.size());
+         Map<String, Integer> map = new HashMap<>();
+         for (int id = 0; id < totals.length; id++) {
+            if (totals[id] > 0) {
+               map.put(authorIds.getName(id), (int) totals[id]);
+            }
+         }
          return map;
       }
 
+      String path;
+
       List<FileBlameResult> childFileResults;
 
       List<DirBlameResult> childDirResults;
 
-      DirBlameResult(List<FileBlameResult> childFileResults, List<DirBlameResult> childDirResults) {
+      DirBlameResult(String path, List<FileBlameResult> childFileResults,
+            List<DirBlameResult> childDirResults) {
+         this.path = path;
          this.childFileResults = childFileResults;
          this.childDirResults = childDirResults;
       }
@@ -60,75 +113,343 @@ public class LinesPerAuthor {
    }
 
    static class FileBlameResult {
-      File file;
-      Map<String, Integer> linesPerAuthor;
+      String path;
+      AuthorCounts linesPerAuthor;
 
-      FileBlameResult(File file, Map<String, Integer> linesPerAuthor) {
-         this.file = file;
+      FileBlameResult(String path, AuthorCounts linesPerAuthor) {
+         this.path = path;
          this.linesPerAuthor = linesPerAuthor;
       }
    }
 
-   private static FileBlameResult countFile(Git git, File file, int[] counts) {
+   /**
+    * Runs both the blame engine and the history replay engine on the same
+    * targets, and prints how long each took and where their results differ.
+    *
+    * @return the result of the blame engine
+    */
+   private static DirBlameResult compareEngines(Git git, BlameTargets targets,
+         LinesPerAuthorOptions options, BlameContext context) throws IOException {
+      // cached results would hide the cost of blame
+      BlameCache cache = context.cache;
+      context.cache = null;
+      long blameStart = System.nanoTime();
+      DirBlameResult blameResult = countFiles(git, targets, options, context);
+      double blameSec = (System.nanoTime() - blameStart) / Math.pow(10, 9);
+      context.cache = cache;
+
+      long replayStart = System.nanoTime();
+      BlameContext replayContext = new BlameContext(new BlameCounts(), context.authorIds);
+      replayContext.authors = context.authors;
+      replayContext.referenceTime = context.referenceTime;
+      replayContext.sinceTime = context.sinceTime;
+      replayContext.profile = context.profile;
+      replayContext.filter = context.filter;
+      DirBlameResult replayResult = HistoryReplay.countFiles(git.getRepository(), targets,
+            replayContext);
+      double replaySec = (System.nanoTime() - replayStart) / Math.pow(10, 9);
+
+      Map<String, Integer> blameLines = DirBlameResult.sumResults(blameResult, context.authorIds);
+      Map<String, Integer> replayLines = DirBlameResult.sumResults(replayResult,
+            context.authorIds);
+      Set<String> authors = new TreeSet<>(blameLines.keySet());
+      authors.addAll(replayLines.keySet());
+      int differences = 0;
+      for (String author : authors) {
+         int blame = blameLines.getOrDefault(author, 0);
+         int replay = replayLines.getOrDefault(author, 0);
+         if (blame != replay) {
+            System.out.println(String.format("%s: blame %d lines, replay %d lines", author,
+                  blame, replay));
+            differences++;
+         }
+      }
+      System.out.println(String.format("Blame engine: %.2f sec, replay engine: %.2f sec (%.1fx)",
+            blameSec, replaySec, blameSec / replaySec));
+      System.out.println(String.format("%d of %d authors differ", differences, authors.size()));
+      return blameResult;
+   }
+
+   /**
+    * Blames the targets once with every {@link BlameProfile}, and prints how long
+    * each profile took and how many lines it attributes to a different author
+    * than the accurate profile.
+    *
+    * @return the result of the profile selected in the context
+    */
+   private static DirBlameResult compareProfiles(Git git, BlameTargets targets,
+         LinesPerAuthorOptions options, BlameContext context) throws IOException {
+      Map<BlameProfile, Map<String, Integer>> profileLines = new EnumMap<>(BlameProfile.class);
+      Map<BlameProfile, Double> profileSec = new EnumMap<>(BlameProfile.class);
+      DirBlameResult selectedResult = null;
+      for (BlameProfile profile : BlameProfile.values()) {
+         // cached results would hide the cost of the profile
+         BlameContext profileContext = profile == context.profile ? context
+               : new BlameContext(new BlameCounts(), context.authorIds);
+         profileContext.authors = context.authors;
+         profileContext.referenceTime = context.referenceTime;
+         profileContext.sinceTime = context.sinceTime;
+         profileContext.profile = profile;
+         BlameCache cache = profileContext.cache;
+         profileContext.cache = null;
+
+         long start = System.nanoTime();
+         DirBlameResult result = countFiles(git, targets, options, profileContext);
+         profileSec.put(profile, (System.nanoTime() - start) / Math.pow(10, 9));
+         profileContext.cache = cache;
+         profileLines.put(profile, DirBlameResult.sumResults(result, context.authorIds));
+         if (profile == context.profile) {
+            selectedResult = result;
+         }
+      }
+
+      Map<String, Integer> accurate = profileLines.get(BlameProfile.ACCURATE);
+      for (BlameProfile profile : BlameProfile.values()) {
+         Map<String, Integer> lines = profileLines.get(profile);
+         Set<String> authors = new TreeSet<>(accurate.keySet());
+         authors.addAll(lines.keySet());
+         long moved = 0;
+         for (String author : authors) {
+            moved += Math.abs(lines.getOrDefault(author, 0) - accurate.getOrDefault(author, 0));
+         }
+         double sec = profileSec.get(profile);
+         System.out.println(String.format(
+               "Profile %s: %.2f sec (%.1f files/sec), %d lines attributed differently "
+                     + "than accurate",
+               profile.getName(), sec, targets.getFileCount() / sec, moved / 2));
+      }
+      return selectedResult;
+   }
+
+   /**
+    * Blames a single file. If the context has a checkpoint of an earlier run that
+    * finished the file, or a cache and the blob id of the file is known, the
+    * saved result is used instead of running blame. Newly blamed files are added
+    * to the checkpoint.
+    *
+    * @param git         the repository the file is in
+    * @param target      the file to blame
+    * @param startCommit the commit to blame from, or null to blame the working
+    *                    directory version of the file
+    * @param context     the settings and counters of the run
+    * @return the lines per author of the file, or null if it could not be blamed
+    */
+   static FileBlameResult countFile(Git git, BlameTargets.Target target, ObjectId startCommit,
+         BlameContext context) {
+      long start = System.nanoTime();
+      context.metrics.fileStarted();
+      try {
+         BlameCheckpoint checkpoint = context.checkpoint;
+         FileBlameResult result = checkpoint != null
+               ? checkpoint.get(target, context.authorIds, context.referenceTime)
+               : null;
+         if (result != null) {
+            context.counts.addFile();
+            context.counts.addLines(result.linesPerAuthor.total());
+            return result;
+         }
+         result = blameFile(git, target, startCommit, context);
+         if (result != null && checkpoint != null) {
+            checkpoint.add(target, result, context.authorIds);
+         }
+         return result;
+      } finally {
+         context.metrics.fileFinished(target.path, System.nanoTime() - start);
+      }
+   }
+
+   private static FileBlameResult blameFile(Git git, BlameTargets.Target target,
+         ObjectId startCommit, BlameContext context) {
+      String fileName = target.path;
+      BlameCounts counts = context.counts;
+      BlameCache cache = target.blobId != null ? context.cache : null;
+      String optionsKey = context.getOptionsKey();
+      if (cache != null) {
+         AuthorCounts cached = cache.get(target.blobId, fileName, optionsKey, context.authorIds,
+               context.referenceTime);
+         if (cached != null) {
+            counts.addFile();
+            counts.addLines(cached.total());
+            return new FileBlameResult(fileName, cached);
+         }
+      }
+
       try {
-         Map<String, Integer> linesPerAuthorMap = new HashMap<>();
-         String fileName = file.toString()
-               .substring(git.getRepository().getWorkTree().toString().length() + 1)
-               .replace("\\", "/");
+         AuthorCounts linesPerAuthor = new AuthorCounts();
 
          // Create a BlameCommand object
-         BlameResult blameResult = git.blame().setFilePath(fileName.toString())
-               .setTextComparator(RawTextComparator.WS_IGNORE_ALL).call();
+         BlameProfile profile = context.profile;
+         BlameResult blameResult;
+         if (context.sinceTime > 0 && startCommit != null) {
+            blameResult = blameSince(git.getRepository(), fileName, startCommit, context);
+         } else {
+            BlameCommand blameCommand = git.blame().setFilePath(fileName)
+                  .setTextComparator(profile.getTextComparator())
+                  .setDiffAlgorithm(profile.getDiffAlgorithm())
+                  .setFollowFileRenames(profile.isFollowRenames());
+            if (startCommit != null) {
+               blameCommand.setStartCommit(startCommit);
+            }
+            blameResult = blameCommand.call();
+         }
 
          // Iterate through the BlameResult object
          if (blameResult == null) {
             return null;
          }
 
-         counts[0]++;
-         for (int i = 0; blameResult != null && i < blameResult.getResultContents().size(); i++) {
-            counts[1]++;
+         int lineCount = blameResult.getResultContents().size();
+         counts.addFile();
+         counts.addLines(lineCount);
+         // Most files have far fewer source commits than lines, so every commit is
+         // only resolved against the mailmap, interned and dated once. The author id
+         // and age bucket of a commit are packed into one int.
+         Map<RevCommit, Integer> commitOwners = new IdentityHashMap<>();
+         // consecutive lines usually come from the same commit, so runs of lines are
+         // counted together, with the commit time for results that are saved
+         RevCommit runCommit = null;
+         int runOwner = -1;
+         int runLength = 0;
+         int boundaryLines = 0;
+         for (int i = 0; i < lineCount; i++) {
             // Get the author of the current line
-            PersonIdent author = blameResult.getSourceAuthor(i);
-            String authorName = author.getName();
-            // Check if the author is already in the HashMap
-            if (linesPerAuthorMap.containsKey(authorName)) {
-               // If yes, increment the number of lines
-               linesPerAuthorMap.put(authorName, linesPerAuthorMap.get(authorName) + 1);
+            RevCommit commit = blameResult.getSourceCommit(i);
+            if (commit != null && commit == runCommit) {
+               runLength++;
+               continue;
+            }
+            if (!blameResult.hasSourceData(i)
+                  || (commit != null && commit.getCommitTime() < context.sinceTime)) {
+               boundaryLines++;
+               continue;
+            }
+            Integer owner = commit != null ? commitOwners.get(commit) : null;
+            if (owner == null) {
+               PersonIdent author = blameResult.getSourceAuthor(i);
+               int authorId = context.authorIds
+                     .intern(context.resolveName(author.getName(), author.getEmailAddress()));
+               // uncommitted lines have no source commit and are as young as it gets
+               int ageBucket = commit != null
+                     ? LineAges.bucketOf(commit.getCommitTime(), context.referenceTime)
+                     : 0;
+               owner = authorId * LineAges.BUCKET_COUNT + ageBucket;
+               if (commit != null) {
+                  commitOwners.put(commit, owner);
+               }
+            }
+            if (owner == runOwner && commit == runCommit) {
+               runLength++;
             } else {
-               // If no, add the author to the HashMap with a value of 1
-               linesPerAuthorMap.put(authorName, 1);
+               if (runLength > 0) {
+                  addRun(linesPerAuthor, runOwner, runCommit, runLength, context);
+               }
+               runOwner = owner;
+               runLength = 1;
             }
+            runCommit = commit;
+         }
+         if (runLength > 0) {
+            addRun(linesPerAuthor, runOwner, runCommit, runLength, context);
+         }
+         if (boundaryLines > 0) {
+            // the walk stopped at the boundary, so the age of these lines is unknown
+            linesPerAuthor.add(context.authorIds.intern(BOUNDARY_AUTHOR), boundaryLines);
          }
 
-         return new FileBlameResult(file, linesPerAuthorMap);
-      } catch (GitAPIException e) {
+         if (cache != null) {
+            cache.put(target.blobId, fileName, optionsKey, linesPerAuthor, context.authorIds);
+         }
+         return new FileBlameResult(fileName, linesPerAuthor);
+      } catch (GitAPIException | IOException e) {
          e.printStackTrace();
       }
       return null;
    }
 
-   private static DirBlameResult countFiles(Git git, File[] files, int[] counts) {
+   private static void addRun(AuthorCounts linesPerAuthor, int owner, RevCommit commit,
+         int length, BlameContext context) {
+      int commitTime = commit != null ? commit.getCommitTime() : LineAges.UNCOMMITTED_TIME;
+      linesPerAuthor.add(owner / LineAges.BUCKET_COUNT, length, commitTime,
+            context.referenceTime);
+   }
+
+   /**
+    * Blames a file back to the history boundary of the context only. The blame
+    * generator visits the commits of a file from the newest commit time to the
+    * oldest, so as soon as it attributes lines to a commit older than the
+    * boundary, all lines that are still unattributed were last changed before
+    * the boundary as well, and the rest of the history is not walked.
+    *
+    * @return the partial blame result, in which lines changed before the
+    *         boundary may have no source data, or null if the file does not exist
+    *         in the start commit
+    */
+   private static BlameResult blameSince(Repository repository, String fileName,
+         ObjectId startCommit, BlameContext context) throws IOException {
+      BlameProfile profile = context.profile;
+      BlameGenerator generator = new BlameGenerator(repository, fileName)
+            .setTextComparator(profile.getTextComparator())
+            .setDiffAlgorithm(profile.getDiffAlgorithm())
+            .setFollowFileRenames(profile.isFollowRenames());
+      try {
+         generator.push(null, startCommit);
+         BlameResult blameResult = BlameResult.create(generator);
+         if (blameResult == null) {
+            return null;
+         }
+         int line;
+         while ((line = blameResult.computeNext()) >= 0) {
+            RevCommit commit = blameResult.getSourceCommit(line);
+            if (commit != null && commit.getCommitTime() < context.sinceTime) {
+               break;
+            }
+         }
+         return blameResult;
+      } finally {
+         generator.close();
+      }
+   }
+
+   private static DirBlameResult countDir(Git git, BlameTargets.Dir dir, ObjectId startCommit,
+         BlameContext context) {
 
       List<FileBlameResult> fileBlames = new ArrayList<>();
       List<DirBlameResult> dirBlames = new ArrayList<>();
 
-      for (File file : files) {
-         if (file.isDirectory() && !file.getName().equals(".git")) {
-            DirBlameResult result = countFiles(git, file.listFiles(), counts);
-            if (!result.childDirResults.isEmpty() || !result.childFileResults.isEmpty()) {
-               dirBlames.add(result);
-            }
+      for (BlameTargets.Dir child : dir.dirs) {
+         DirBlameResult result = countDir(git, child, startCommit, context);
+         if (!result.childDirResults.isEmpty() || !result.childFileResults.isEmpty()) {
+            dirBlames.add(result);
+         }
+      }
 
-         } else if (Files.isRegularFile(file.toPath(), new LinkOption[0])) {
-            FileBlameResult result = countFile(git, file, counts);
-            if (result != null) {
-               fileBlames.add(result);
-            }
+      for (BlameTargets.Target target : dir.files) {
+         FileBlameResult result = countFile(git, target, startCommit, context);
+         if (result != null && !context.stream(result)) {
+            fileBlames.add(result);
          }
       }
 
-      return new DirBlameResult(fileBlames, dirBlames);
+      return new DirBlameResult(dir.path, fileBlames, dirBlames);
+   }
+
+   static DirBlameResult countFiles(Git git, BlameTargets targets, BlameContext context) {
+      context.metrics.addQueuedFiles(targets.getFileCount());
+      return countDir(git, targets.getRoot(), targets.getCommitId(), context);
+   }
+
+   private static DirBlameResult countFiles(Git git, BlameTargets targets,
+         LinesPerAuthorOptions options, BlameContext context) throws IOException {
+      if (options.getThreads() > 1) {
+         return new ParallelBlame(git.getRepository().getDirectory(), options.getThreads(), context)
+               .countFiles(targets);
+      }
+      return countFiles(git, targets, context);
+   }
+
+   static DirBlameResult countFiles(Git git, File[] files, BlameContext context) {
+      return countFiles(git, BlameTargets.fromWorkTree(git.getRepository().getWorkTree(), files),
+            context);
    }
 
    public static Git getGitRepo() throws IOException {
@@ -145,35 +466,292 @@ public class LinesPerAuthor {
    }
 
    public static void main(String[] args) throws IOException {
+      LinesPerAuthorOptions options = LinesPerAuthorOptions.parse(args);
+
       // Initialize a Git repository object
-      Git git = getGitRepo();
+      Git git = options.getRepository() != null ? Git.open(options.getRepository())
+            : getGitRepo();
+
+      Repository repository = git.getRepository();
 
-      // Set the file path for the blame command
-      File rootDirectory = git.getRepository().getWorkTree();
+      // before any pack is read, so the whole run uses the same cache
+      WindowCacheConfig cacheConfig = ObjectCacheSettings.of(repository, options);
+      ObjectCacheSettings.install(cacheConfig);
+      System.out.println("Object cache: " + ObjectCacheSettings.describe(cacheConfig));
 
       long timeStart = System.nanoTime();
-      int[] counts = new int[2];
+      BlameCounts counts = new BlameCounts();
+
+      // Bare repositories have no working directory, and the history replay and
+      // bounded blame only know committed content, so they always blame the
+      // committed tree
+      BlameTargets targets;
+      if (options.getRevision() != null || repository.isBare() || options.getSince() != null
+            || options.getEngine() == LinesPerAuthorOptions.Engine.REPLAY
+            || options.getEngine() == LinesPerAuthorOptions.Engine.COMPARE) {
+         String revision = options.getRevision() != null ? options.getRevision() : Constants.HEAD;
+         targets = BlameTargets.fromRevision(repository, revision);
+      } else {
+         File rootDirectory = repository.getWorkTree();
+         targets = BlameTargets.fromWorkTree(rootDirectory, rootDirectory.listFiles());
+      }
+
+      BlameContext context = new BlameContext(counts);
+      if (options.getCacheFile() != null) {
+         context.cache = BlameCache.open(options.getCacheFile(), options.getCacheSize());
+      }
+      if (options.getMailmap() != null) {
+         context.authors = AuthorResolver.load(options.getMailmap());
+      }
+      if (targets.getCommitId() != null) {
+         // ages are measured at the blamed commit
+         try (RevWalk revWalk = new RevWalk(repository)) {
+            context.referenceTime = revWalk.parseCommit(targets.getCommitId()).getCommitTime();
+         }
+      }
+      context.profile = options.getProfile();
+      if (options.getSince() != null) {
+         context.sinceTime = resolveSince(repository, options.getSince());
+      }
+      context.filter = new BlameFilter(options.getIncludes(), options.getExcludes(),
+            options.getMaxFileSize());
+
+      File incrementalFile = options.getIncrementalFile();
+      if (options.getOutputFile() != null) {
+         // both need the result of every file at the end of the run
+         if (incrementalFile != null
+               || options.getEngine() == LinesPerAuthorOptions.Engine.COMPARE
+               || options.getEngine() == LinesPerAuthorOptions.Engine.PROFILES) {
+            throw new IllegalArgumentException("--output cannot be combined with --incremental "
+                  + "or --engine compare or profiles");
+         }
+         context.sink = ResultSink.open(options.getOutputFormat(), options.getOutputFile(),
+               context.authorIds);
+      }
+
+      if (options.getCheckpointFile() != null) {
+         if (options.getEngine() != LinesPerAuthorOptions.Engine.BLAME) {
+            throw new IllegalArgumentException("--checkpoint needs --engine blame");
+         }
+         File workTree = repository.isBare() ? null : repository.getWorkTree();
+         context.checkpoint = options.isResume()
+               ? BlameCheckpoint.resume(options.getCheckpointFile(), targets.getCommitId(),
+                     workTree, context.getOptionsKey(), options.getCheckpointInterval())
+               : BlameCheckpoint.create(options.getCheckpointFile(), targets.getCommitId(),
+                     workTree, context.getOptionsKey(), options.getCheckpointInterval());
+         if (options.isResume()) {
+            System.out.println(String.format("Resuming from %s: %d finished files",
+                  options.getCheckpointFile(), context.checkpoint.size()));
+         }
+      } else if (options.isResume()) {
+         throw new IllegalArgumentException("--resume needs a --checkpoint file");
+      }
+
+      context.metrics.register();
+      if (options.getMetricsInterval() > 0) {
+         context.metrics.startLogging(options.getMetricsInterval(), System.out);
+      }
+
+      DirBlameResult result;
+      try {
+         result = runEngine(git, targets, options, context, incrementalFile);
+      } catch (UncheckedIOException e) {
+         // a sink that failed to write
+         throw e.getCause();
+      } finally {
+         context.metrics.close();
+         if (context.sink != null) {
+            context.sink.close();
+         }
+         if (context.checkpoint != null) {
+            context.checkpoint.close();
+         }
+      }
 
-      File[] files = rootDirectory.listFiles();
-      DirBlameResult result = countFiles(git, files, counts);
+      if (context.cache != null) {
+         context.cache.save();
+      }
 
-      Map<String, Integer> linesPerAuthor = DirBlameResult.sumResults(result);
+      Map<String, Integer> linesPerAuthor = context.sink != null ? context.sink.getTotals()
+            : DirBlameResult.sumResults(result, context.authorIds);
+      Map<String, long[]> agesPerAuthor = context.sink != null ? context.sink.getAgeTotals()
+            : DirBlameResult.sumAges(result, context.authorIds);
 
       // Print the results
       for (String author : linesPerAuthor.keySet()) {
-         System.out.println(author + ": " + linesPerAuthor.get(author) + " lines");
+         int lines = linesPerAuthor.get(author);
+         long[] ages = agesPerAuthor.getOrDefault(author, new long[LineAges.BUCKET_COUNT]);
+         System.out.println(String.format("%s: %d lines (%s)", author, lines,
+               LineAges.describe(ages, lines)));
+      }
+      if (options.getDirReportDepth() > 0 && context.sink == null) {
+         printDirReport(DirectoryRollup.of(result, context.authorIds),
+               options.getDirReportDepth());
       }
 
       double deltaTimeSec = (System.nanoTime() - timeStart) / Math.pow(10, 9);
       System.out.println(String.format("Total run time: %.2f sec", deltaTimeSec));
-      System.out.println(String.format("Total files: %d", counts[0]));
-      System.out.println(String.format("Total lines: %d", counts[1]));
+      System.out.println(String.format("Blame threads: %d", options.getThreads()));
+      System.out.println(String.format("Blame profile: %s", context.profile.getName()));
+      System.out.println(String.format("Total files: %d", counts.getFiles()));
+      System.out.println(String.format("Total lines: %d", counts.getLines()));
+      System.out.println("Skipped files: " + context.filter.getSkippedSummary());
+      System.out.println("Object cache: " + ObjectCacheSettings.describeStats());
+      if (context.checkpoint != null) {
+         System.out.println(String.format("Checkpoint: %d files resumed, %d finished",
+               context.checkpoint.getResumedFiles(), context.checkpoint.size()));
+      }
+      if (context.cache != null) {
+         System.out.println(String.format("Blame cache: %d hits, %d misses, %d entries",
+               context.cache.getHits(), context.cache.getMisses(), context.cache.size()));
+      }
       System.out.println(String.format("%.2f sec per file, %.2f milisec per line",
-            deltaTimeSec / counts[0], deltaTimeSec / counts[1] * 1000));
+            deltaTimeSec / counts.getFiles(), deltaTimeSec / counts.getLines() * 1000));
+      // the replay engine records every file version it replays rather than the targets
+      String latencyName = options.getEngine() == LinesPerAuthorOptions.Engine.REPLAY
+            ? "Replayed file version latency"
+            : "File latency";
+      System.out.println(String.format("%s: p50 %.1f ms, p95 %.1f ms, p99 %.1f ms",
+            latencyName, context.metrics.getLatencyP50Millis(),
+            context.metrics.getLatencyP95Millis(), context.metrics.getLatencyP99Millis()));
+      for (String slowFile : context.metrics.getSlowestFiles()) {
+         System.out.println("Slow file " + slowFile);
+      }
+   }
+
+   /**
+    * Resolves the history boundary of a bounded run to a time. The boundary is
+    * either a date in ISO format, for example 2024-01-31, taken as the start of
+    * that day in UTC, or a revision such as a tag, whose commit time is used.
+    *
+    * @return the boundary in seconds since the epoch
+    * @throws IllegalArgumentException if the boundary is neither a date nor a
+    *                                  known revision
+    */
+   private static long resolveSince(Repository repository, String since) throws IOException {
+      try {
+         return LocalDate.parse(since).atStartOfDay(ZoneOffset.UTC).toEpochSecond();
+      } catch (DateTimeParseException e) {
+         // not a date, so it should be a revision
+      }
+      ObjectId commitId;
+      try {
+         commitId = repository.resolve(since);
+      } catch (RevisionSyntaxException e) {
+         commitId = null;
+      }
+      if (commitId == null) {
+         throw new IllegalArgumentException("--since is neither a date nor a revision: " + since);
+      }
+      try (RevWalk revWalk = new RevWalk(repository)) {
+         return revWalk.parseCommit(commitId).getCommitTime();
+      }
    }
 
+   /**
+    * Prints the lines per author of every directory down to a depth, largest
+    * owner first.
+    */
+   private static void printDirReport(DirectoryRollup rollup, int maxDepth) {
+      for (String dir : rollup.getDirectories()) {
+         int depth = dir.isEmpty() ? 0 : dir.split("/").length;
+         if (depth > maxDepth) {
+            continue;
+         }
+         List<Entry<String, Long>> totals = new ArrayList<>(rollup.getTotals(dir).entrySet());
+         totals.sort(Entry.<String, Long> comparingByValue().reversed());
+         StringBuilder line = new StringBuilder(dir.isEmpty() ? "/" : dir + "/");
+         for (int i = 0; i < totals.size(); i++) {
+            line.append(i == 0 ? ": " : ", ").append(totals.get(i).getKey()).append(' ')
+                  .append(totals.get(i).getValue());
+         }
+         System.out.println(line);
+      }
+   }
+
+   /**
+    * Runs the engine selected by the options on the targets that pass the
+    * filter of the context. An incremental run only filters the changed files.
+    *
+    * @return the result tree, which only contains directories if the results
+    *         are streamed to a sink
+    */
+   private static DirBlameResult runEngine(Git git, BlameTargets targets,
+         LinesPerAuthorOptions options, BlameContext context, File incrementalFile)
+         throws IOException {
+      // only the targets that are blamed are filtered, so every file is checked once
+      Repository repository = git.getRepository();
+      BlameFilter filter = context.filter;
+      DirBlameResult result;
+      if (options.getEngine() == LinesPerAuthorOptions.Engine.REPLAY) {
+         result = HistoryReplay.countFiles(repository, filter.apply(repository, targets),
+               context);
+      } else if (options.getEngine() == LinesPerAuthorOptions.Engine.COMPARE) {
+         result = compareEngines(git, filter.apply(repository, targets), options, context);
+      } else if (options.getEngine() == LinesPerAuthorOptions.Engine.PROFILES) {
+         result = compareProfiles(git, filter.apply(repository, targets), options, context);
+      } else if (incrementalFile != null) {
+         if (targets.getCommitId() == null) {
+            throw new IllegalArgumentException(
+                  "--incremental needs a revision to blame, use --revision");
+         }
+         IncrementalBlame.Snapshot previous = IncrementalBlame.load(incrementalFile,
+               context.authorIds, context.referenceTime);
+         // the filter decides which unchanged files the saved result covers
+         String optionsKey = context.getOptionsKey() + ";" + filter.getKey();
+         if (previous != null && !previous.optionsKey.equals(optionsKey)) {
+            System.out.println("Saved result of " + previous.commitId.name()
+                  + " was computed with other options, blaming all files");
+            previous = null;
+         }
+         if (previous != null && !IncrementalBlame.isAncestor(repository, previous.commitId,
+               targets.getCommitId())) {
+            System.out.println("Saved commit " + previous.commitId.name()
+                  + " is not an ancestor of the blamed commit, blaming all files");
+            previous = null;
+         }
+         if (previous != null) {
+            // only blame what changed since the saved result
+            IncrementalBlame.Changes changes = IncrementalBlame.diff(repository,
+                  previous.commitId, targets.getCommitId());
+            BlameTargets changedTargets = filter.apply(repository, changes.targets);
+            System.out.println(String.format(
+                  "Updating result of %s: %d files to blame, %d previous results dropped",
+                  previous.commitId.name(), changedTargets.getFileCount(),
+                  changes.removedPaths.size()));
+            result = IncrementalBlame.apply(previous.result, changes,
+                  countFiles(git, changedTargets, options, context));
+         } else {
+            result = countFiles(git, filter.apply(repository, targets), options, context);
+         }
+         IncrementalBlame.save(incrementalFile, targets.getCommitId(), optionsKey, result,
+               context.authorIds);
+      } else {
+         result = countFiles(git, filter.apply(repository, targets), options, context);
+      }
+      return result;
+   }
+
+   /**
+    * Blames every file below a directory of the work tree, like
+    * {@link #walkFiles(File, Git, BlameCounts, Map)}.
+    *
+    * @param counts the number of files and lines blamed, which are added to the
+    *               first and second element
+    * @deprecated use {@link #walkFiles(File, Git, BlameCounts, Map)}, whose
+    *             counters can be shared between threads
+    */
+   @Deprecated
    public static void walkFiles(File rootDirectory, Git git, int[] counts,
          Map<String, Integer> linesPerAuthor) throws IOException {
+      BlameCounts blameCounts = new BlameCounts();
+      walkFiles(rootDirectory, git, blameCounts, linesPerAuthor);
+      counts[0] += (int) blameCounts.getFiles();
+      counts[1] += (int) blameCounts.getLines();
+   }
+
+   public static void walkFiles(File rootDirectory, Git git, BlameCounts counts,
+         Map<String, Integer> linesPerAuthor) throws IOException {
 
       Path rootPath = rootDirectory.toPath();
 
@@ -190,11 +768,11 @@ public class LinesPerAuthor {
 
                // Iterate through the BlameResult object
                if (blameResult != null) {
-                  counts[0]++;
+                  counts.addFile();
+                  counts.addLines(blameResult.getResultContents().size());
                }
                for (int i = 0; blameResult != null
                      && i < blameResult.getResultContents().size(); i++) {
-                  counts[1]++;
                   // Get the author of the current line
                   PersonIdent author = blameResult.getSourceAuthor(i);
                   String authorName = author.getName();
@@ -0,0 +1,635 @@
+package my.git.stats;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Command line options for a {@link LinesPerAuthor} run.
+ */
+public class LinesPerAuthorOptions {
+
+   /**
+    * The ways lines can be attributed to their authors.
+    */
+   public enum Engine {
+      /** Run blame on every file. */
+      BLAME,
+      /** Replay the history once, see {@link HistoryReplay}. */
+      REPLAY,
+      /** Run both engines and report the differences and timings. */
+      COMPARE,
+      /**
+       * Run the blame engine once with every {@link BlameProfile} and report the
+       * timing and accuracy of each.
+       */
+      PROFILES
+   }
+
+   /**
+    * The formats the result of every file can be streamed in, see
+    * {@link ResultSink}.
+    */
+   public enum OutputFormat {
+      /** One JSON object per file and line. */
+      JSONL,
+      /** One "path,author,lines" row per author of every file. */
+      CSV,
+      /** A compact stream of binary records. */
+      BINARY
+   }
+
+   /**
+    * Parses the command line arguments of {@link LinesPerAuthor#main}. Options
+    * are given as "--name value" pairs; a single argument that is not an option
+    * is taken as the repository directory.
+    *
+    * @param args the command line arguments
+    * @return the parsed options
+    * @throws IllegalArgumentException if an option is unknown or its value is
+    *                                  missing or malformed
+    */
+   public static LinesPerAuthorOptions parse(String[] args) {
+      LinesPerAuthorOptions options = new LinesPerAuthorOptions();
+      for (int i = 0; i < args.length; i++) {
+         String arg = args[i];
+         if (!arg.startsWith("--")) {
+            options.repository = new File(arg);
+            continue;
+         }
+         if (i + 1 >= args.length) {
+            throw new IllegalArgumentException("Missing value for option " + arg);
+         }
+         String value = args[++i];
+         switch (arg) {
+         case "--since":
+            options.since = value;
+            break;
+         case "--threads":
+            options.threads = parseInt(arg, value);
+            if (options.threads < 0) {
+               throw new IllegalArgumentException("--threads must not be negative: " + value);
+            }
+            break;
+         case "--cache":
+            options.cacheFile = new File(value);
+            break;
+         case "--cache-size":
+            options.cacheSize = parseInt(arg, value);
+            if (options.cacheSize < 1) {
+               throw new IllegalArgumentException("--cache-size must be positive: " + value);
+            }
+            break;
+         case "--delta-base-cache-limit":
+            options.deltaBaseCacheLimit = parseIntSize(arg, value);
+            break;
+         case "--checkpoint":
+            options.checkpointFile = new File(value);
+            break;
+         case "--checkpoint-interval":
+            options.checkpointInterval = parseInt(arg, value);
+            if (options.checkpointInterval < 0) {
+               throw new IllegalArgumentException(
+                     "--checkpoint-interval must not be negative: " + value);
+            }
+            break;
+         case "--dir-report":
+            options.dirReportDepth = parseInt(arg, value);
+            if (options.dirReportDepth < 0) {
+               throw new IllegalArgumentException("--dir-report must not be negative: " + value);
+            }
+            break;
+         case "--engine":
+            try {
+               options.engine = Engine.valueOf(value.toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+               throw new IllegalArgumentException("Unknown engine " + value, e);
+            }
+            break;
+         case "--exclude":
+            options.excludes.add(value);
+            break;
+         case "--include":
+            options.includes.add(value);
+            break;
+         case "--max-file-size":
+            options.maxFileSize = parseLong(arg, value);
+            if (options.maxFileSize < 0) {
+               throw new IllegalArgumentException("--max-file-size must not be negative: " + value);
+            }
+            break;
+         case "--incremental":
+            options.incrementalFile = new File(value);
+            break;
+         case "--output":
+            options.outputFile = new File(value);
+            break;
+         case "--output-format":
+            try {
+               options.outputFormat = OutputFormat.valueOf(value.toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+               throw new IllegalArgumentException("Unknown output format " + value, e);
+            }
+            break;
+         case "--metrics-interval":
+            options.metricsInterval = parseInt(arg, value);
+            if (options.metricsInterval < 0) {
+               throw new IllegalArgumentException(
+                     "--metrics-interval must not be negative: " + value);
+            }
+            break;
+         case "--mailmap":
+            options.mailmap = new File(value);
+            break;
+         case "--packed-git-limit":
+            options.packedGitLimit = parseSize(arg, value);
+            break;
+         case "--packed-git-mmap":
+            options.packedGitMmap = parseBoolean(arg, value);
+            break;
+         case "--packed-git-open-files":
+            options.packedGitOpenFiles = parseInt(arg, value);
+            if (options.packedGitOpenFiles < 0) {
+               throw new IllegalArgumentException(
+                     "--packed-git-open-files must not be negative: " + value);
+            }
+            break;
+         case "--packed-git-window-size":
+            options.packedGitWindowSize = parseIntSize(arg, value);
+            break;
+         case "--profile":
+            try {
+               options.profile = BlameProfile.parse(value);
+            } catch (IllegalArgumentException e) {
+               throw new IllegalArgumentException("Unknown blame profile " + value, e);
+            }
+            break;
+         case "--resume":
+            options.resume = parseBoolean(arg, value);
+            break;
+         case "--revision":
+            options.revision = value;
+            break;
+         default:
+            throw new IllegalArgumentException("Unknown option " + arg);
+         }
+      }
+      return options;
+   }
+
+   private static boolean parseBoolean(String option, String value) {
+      if (!value.equals("true") && !value.equals("false")) {
+         throw new IllegalArgumentException(option + " must be true or false: " + value);
+      }
+      return Boolean.parseBoolean(value);
+   }
+
+   private static int parseInt(String option, String value) {
+      try {
+         return Integer.parseInt(value);
+      } catch (NumberFormatException e) {
+         throw new IllegalArgumentException("Invalid value for " + option + ": " + value, e);
+      }
+   }
+
+   private static long parseLong(String option, String value) {
+      try {
+         return Long.parseLong(value);
+      } catch (NumberFormatException e) {
+         throw new IllegalArgumentException("Invalid value for " + option + ": " + value, e);
+      }
+   }
+
+   /**
+    * Parses a size in bytes with an optional k, m or g suffix, as in the git
+    * configuration.
+    */
+   private static long parseSize(String option, String value) {
+      String digits = value;
+      long unit = 1;
+      switch (value.isEmpty() ? ' ' : Character.toLowerCase(value.charAt(value.length() - 1))) {
+      case 'k':
+         unit = 1024;
+         break;
+      case 'm':
+         unit = 1024 * 1024;
+         break;
+      case 'g':
+         unit = 1024 * 1024 * 1024;
+         break;
+      default:
+         break;
+      }
+      if (unit > 1) {
+         digits = value.substring(0, value.length() - 1);
+      }
+      long size = parseLong(option, digits);
+      if (size < 0 || size > Long.MAX_VALUE / unit) {
+         throw new IllegalArgumentException("Invalid value for " + option + ": " + value);
+      }
+      return size * unit;
+   }
+
+   private static int parseIntSize(String option, String value) {
+      long size = parseSize(option, value);
+      if (size > Integer.MAX_VALUE) {
+         throw new IllegalArgumentException("Invalid value for " + option + ": " + value);
+      }
+      return (int) size;
+   }
+
+   private File cacheFile;
+
+   private int cacheSize = 200_000;
+
+   private File checkpointFile;
+
+   private int checkpointInterval = 60;
+
+   private int deltaBaseCacheLimit;
+
+   private int dirReportDepth;
+
+   private Engine engine = Engine.BLAME;
+
+   private List<String> excludes = new ArrayList<>();
+
+   private List<String> includes = new ArrayList<>();
+
+   private File incrementalFile;
+
+   private File mailmap;
+
+   private long maxFileSize;
+
+   private int metricsInterval;
+
+   private File outputFile;
+
+   private OutputFormat outputFormat = OutputFormat.JSONL;
+
+   private long packedGitLimit;
+
+   private Boolean packedGitMmap;
+
+   private int packedGitOpenFiles;
+
+   private int packedGitWindowSize;
+
+   private BlameProfile profile = BlameProfile.WHITESPACE_INSENSITIVE;
+
+   private File repository;
+
+   private boolean resume;
+
+   private String revision;
+
+   private String since;
+
+   private int threads = 1;
+
+   /**
+    * Returns the file blame results are cached in between runs. Cached results
+    * are only used when blaming a revision, because only then is the blob id of
+    * each file known.
+    *
+    * @return the blame cache file, or null to run without a cache
+    */
+   public File getCacheFile() {
+      return cacheFile;
+   }
+
+   /**
+    * @return the maximum number of files kept in the blame cache
+    */
+   public int getCacheSize() {
+      return cacheSize;
+   }
+
+   /**
+    * Returns the file finished files are journaled to while the blame engine
+    * runs, so a run that fails part way can be resumed, see {@link #isResume()}.
+    * A run that is not resumed starts a new journal.
+    *
+    * @return the checkpoint file, or null to run without checkpoints
+    */
+   public File getCheckpointFile() {
+      return checkpointFile;
+   }
+
+   /**
+    * @return the seconds between two flushes of the checkpoint file to disk, or
+    *         0 to flush after every file
+    */
+   public int getCheckpointInterval() {
+      return checkpointInterval;
+   }
+
+   /**
+    * Returns the memory used to keep recently inflated delta bases, which saves
+    * inflating the same base again for each object deltified against it. Sizes
+    * can be given with a k, m or g suffix.
+    *
+    * @return the delta base cache limit in bytes, or 0 to use the
+    *         core.deltaBaseCacheLimit of the repository or the JGit default
+    */
+   public int getDeltaBaseCacheLimit() {
+      return deltaBaseCacheLimit;
+   }
+
+   /**
+    * Returns how deep the per-directory ownership report goes. The report lists
+    * the lines per author below every directory down to this depth, where the
+    * root directory has depth 0. It cannot be printed when the results are
+    * streamed to an output file.
+    *
+    * @return the depth of the directory report, or 0 to print no report
+    */
+   public int getDirReportDepth() {
+      return dirReportDepth;
+   }
+
+   /**
+    * @return the engine used to attribute lines to their authors
+    */
+   public Engine getEngine() {
+      return engine;
+   }
+
+   /**
+    * @return the globs of the paths not to blame, see {@link BlameFilter}
+    */
+   public List<String> getExcludes() {
+      return excludes;
+   }
+
+   /**
+    * @return the globs of the paths to blame, or an empty list to blame all paths,
+    *         see {@link BlameFilter}
+    */
+   public List<String> getIncludes() {
+      return includes;
+   }
+
+   /**
+    * Returns the file the result of an incremental run is kept in. If the file
+    * exists, only the files that changed between the commit it was saved for and
+    * the blamed revision are blamed again. The updated result is then saved back
+    * to the file.
+    *
+    * @return the incremental result file, or null for a full run
+    */
+   public File getIncrementalFile() {
+      return incrementalFile;
+   }
+
+   /**
+    * @return the mailmap file used to resolve identities to their canonical
+    *         author, or null to count lines by the recorded author name
+    */
+   public File getMailmap() {
+      return mailmap;
+   }
+
+   /**
+    * @return the size in bytes above which files are not blamed, or 0 for no
+    *         limit, the default
+    */
+   public long getMaxFileSize() {
+      return maxFileSize;
+   }
+
+   /**
+    * Returns the number of seconds between two progress lines, which report the
+    * file and line rates of the last interval, the number of queued files, and
+    * the per-file latency percentiles and the slowest file since the start. The
+    * same metrics are always available over JMX while the run is going, see
+    * {@link BlameMetricsMXBean}, where the rates are averages since the start.
+    *
+    * @return the seconds between progress lines, or 0 to print none
+    */
+   public int getMetricsInterval() {
+      return metricsInterval;
+   }
+
+   /**
+    * Returns the file the result of every file is streamed to. When set, the
+    * results are written out as soon as each file is blamed and only the
+    * per-author totals are kept in memory.
+    *
+    * @return the output file, or null to keep all results in memory
+    */
+   public File getOutputFile() {
+      return outputFile;
+   }
+
+   /**
+    * @return the format of the output file
+    */
+   public OutputFormat getOutputFormat() {
+      return outputFormat;
+   }
+
+   /**
+    * Returns the total size of the pack windows the object cache keeps in
+    * memory. A limit larger than the packs of the repository keeps every pack
+    * resident once it was read.
+    *
+    * @return the pack cache limit in bytes, or 0 to use the core.packedGitLimit
+    *         of the repository or the JGit default
+    */
+   public long getPackedGitLimit() {
+      return packedGitLimit;
+   }
+
+   /**
+    * @return true to map pack windows into memory, false to read them into the
+    *         heap, or null to use the core.packedGitMmap of the repository or
+    *         the JGit default
+    */
+   public Boolean getPackedGitMmap() {
+      return packedGitMmap;
+   }
+
+   /**
+    * @return the maximum number of pack files kept open, or 0 to use the
+    *         core.packedGitOpenFiles of the repository or the JGit default
+    */
+   public int getPackedGitOpenFiles() {
+      return packedGitOpenFiles;
+   }
+
+   /**
+    * Returns the size of the pack file windows read at once, which must be a
+    * power of 2 of at least 4 KiB.
+    *
+    * @return the pack window size in bytes, or 0 to use the
+    *         core.packedGitWindowSize of the repository or the JGit default
+    */
+   public int getPackedGitWindowSize() {
+      return packedGitWindowSize;
+   }
+
+   /**
+    * @return the settings files are blamed with, see {@link BlameProfile}
+    */
+   public BlameProfile getProfile() {
+      return profile;
+   }
+
+   /**
+    * @return the repository to blame, or null if the user should be asked to
+    *         choose one
+    */
+   public File getRepository() {
+      return repository;
+   }
+
+   /**
+    * Returns whether to resume the run journaled in the checkpoint file. Files
+    * the journal lists as finished are not blamed again, unless their content
+    * changed, so the result is the same as that of an uninterrupted run. The
+    * resumed run must blame the same revision with the same options.
+    *
+    * @return true to resume from the checkpoint file, false to start over
+    */
+   public boolean isResume() {
+      return resume;
+   }
+
+   /**
+    * Returns the revision whose committed tree is blamed. When no revision is
+    * given the working directory is blamed instead, unless the repository is
+    * bare or the history replay engine is used, in which case HEAD is blamed.
+    *
+    * @return the revision to blame, or null to blame the working directory
+    */
+   public String getRevision() {
+      return revision;
+   }
+
+   /**
+    * Returns the history boundary of a bounded run: a date such as 2024-01-31 or
+    * a revision such as a release tag, whose commit time is used. Blame only
+    * walks the history of a file back to the boundary, and all lines last
+    * changed before it are counted under a single "(before boundary)" author.
+    * A bounded run always blames a committed tree.
+    *
+    * @return the history boundary, or null to blame the full history
+    */
+   public String getSince() {
+      return since;
+   }
+
+   /**
+    * Returns the number of threads to blame with. A value of 1 blames every file
+    * on the calling thread; a value of 0 uses one thread per available processor.
+    *
+    * @return the number of blame threads
+    */
+   public int getThreads() {
+      return threads == 0 ? Runtime.getRuntime().availableProcessors() : threads;
+   }
+
+   public void setCacheFile(File cacheFile) {
+      this.cacheFile = cacheFile;
+   }
+
+   public void setCacheSize(int cacheSize) {
+      this.cacheSize = cacheSize;
+   }
+
+   public void setCheckpointFile(File checkpointFile) {
+      this.checkpointFile = checkpointFile;
+   }
+
+   public void setCheckpointInterval(int checkpointInterval) {
+      this.checkpointInterval = checkpointInterval;
+   }
+
+   public void setDeltaBaseCacheLimit(int deltaBaseCacheLimit) {
+      this.deltaBaseCacheLimit = deltaBaseCacheLimit;
+   }
+
+   public void setDirReportDepth(int dirReportDepth) {
+      this.dirReportDepth = dirReportDepth;
+   }
+
+   public void setEngine(Engine engine) {
+      this.engine = engine;
+   }
+
+   public void setExcludes(List<String> excludes) {
+      this.excludes = excludes;
+   }
+
+   public void setIncludes(List<String> includes) {
+      this.includes = includes;
+   }
+
+   public void setIncrementalFile(File incrementalFile) {
+      this.incrementalFile = incrementalFile;
+   }
+
+   public void setMailmap(File mailmap) {
+      this.mailmap = mailmap;
+   }
+
+   public void setMaxFileSize(long maxFileSize) {
+      this.maxFileSize = maxFileSize;
+   }
+
+   public void setMetricsInterval(int metricsInterval) {
+      this.metricsInterval = metricsInterval;
+   }
+
+   public void setOutputFile(File outputFile) {
+      this.outputFile = outputFile;
+   }
+
+   public void setOutputFormat(OutputFormat outputFormat) {
+      this.outputFormat = outputFormat;
+   }
+
+   public void setPackedGitLimit(long packedGitLimit) {
+      this.packedGitLimit = packedGitLimit;
+   }
+
+   public void setPackedGitMmap(Boolean packedGitMmap) {
+      this.packedGitMmap = packedGitMmap;
+   }
+
+   public void setPackedGitOpenFiles(int packedGitOpenFiles) {
+      this.packedGitOpenFiles = packedGitOpenFiles;
+   }
+
+   public void setPackedGitWindowSize(int packedGitWindowSize) {
+      this.packedGitWindowSize = packedGitWindowSize;
+   }
+
+   public void setProfile(BlameProfile profile) {
+      this.profile = profile;
+   }
+
+   public void setRepository(File repository) {
+      this.repository = repository;
+   }
+
+   public void setResume(boolean resume) {
+      this.resume = resume;
+   }
+
+   public void setRevision(String revision) {
+      this.revision = revision;
+   }
+
+   public void setSince(String since) {
+      this.since = since;
+   }
+
+   public void setThreads(int threads) {
+      this.threads = threads;
+   }
+
+}
@@ -0,0 +1,103 @@
+package my.git.stats;
+
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.storage.file.WindowCacheConfig;
+import org.eclipse.jgit.storage.file.WindowCacheStats;
+
+/**
+ * The settings of the JGit object cache used by a {@link LinesPerAuthor} run.
+ * Blame spends most of its time reading objects from pack files, and JGit's
+ * defaults only keep a few MiB of them in memory, so a large run evicts the
+ * same pack windows over and over. The settings start from the core.* options
+ * of the repository configuration, and the run options override them.
+ * <p>
+ * JGit has a single object cache per JVM, so the settings apply to every
+ * repository opened after they are installed.
+ */
+final class ObjectCacheSettings {
+
+   /**
+    * Builds the cache settings of a run.
+    *
+    * @param repository the repository whose configuration the settings start
+    *                   from
+    * @param options    the options that override the configuration
+    * @return the settings to install
+    */
+   static WindowCacheConfig of(Repository repository, LinesPerAuthorOptions options) {
+      WindowCacheConfig config = new WindowCacheConfig().fromConfig(repository.getConfig());
+      if (options.getPackedGitWindowSize() > 0) {
+         config.setPackedGitWindowSize(options.getPackedGitWindowSize());
+      }
+      if (options.getPackedGitLimit() > 0) {
+         config.setPackedGitLimit(options.getPackedGitLimit());
+      }
+      if (options.getPackedGitOpenFiles() > 0) {
+         config.setPackedGitOpenFiles(options.getPackedGitOpenFiles());
+      }
+      if (options.getDeltaBaseCacheLimit() > 0) {
+         config.setDeltaBaseCacheLimit(options.getDeltaBaseCacheLimit());
+      }
+      if (options.getPackedGitMmap() != null) {
+         config.setPackedGitMMAP(options.getPackedGitMmap());
+      }
+      return config;
+   }
+
+   /**
+    * Installs the settings of a run as the object cache of the JVM.
+    *
+    * @param config the settings to install
+    * @throws IllegalArgumentException if the settings are inconsistent, for
+    *                                  example a window size that is not a power
+    *                                  of 2 or a limit below the window size
+    */
+   static void install(WindowCacheConfig config) {
+      int windowSize = config.getPackedGitWindowSize();
+      if (windowSize < 4096 || Integer.bitCount(windowSize) != 1) {
+         throw new IllegalArgumentException(
+               "The pack window size must be a power of 2 of at least 4096: " + windowSize);
+      }
+      if (config.getPackedGitLimit() < windowSize) {
+         throw new IllegalArgumentException("The pack limit " + config.getPackedGitLimit()
+               + " is smaller than the pack window size " + windowSize);
+      }
+      config.install();
+   }
+
+   /**
+    * @param config the cache settings
+    * @return a one line description of the settings
+    */
+   static String describe(WindowCacheConfig config) {
+      return String.format("window %s, limit %s, open files %d, delta base cache %s, mmap %s",
+            formatBytes(config.getPackedGitWindowSize()), formatBytes(config.getPackedGitLimit()),
+            config.getPackedGitOpenFiles(), formatBytes(config.getDeltaBaseCacheLimit()),
+            config.isPackedGitMMAP() ? "on" : "off");
+   }
+
+   /**
+    * @return a one line description of how well the object cache did so far
+    */
+   static String describeStats() {
+      WindowCacheStats stats = WindowCacheStats.getStats();
+      return String.format("%.1f%% hits, %d loads, %d evictions, %s open in %d files",
+            stats.getHitRatio() * 100, stats.getLoadCount(), stats.getEvictionCount(),
+            formatBytes(stats.getOpenByteCount()), stats.getOpenFileCount());
+   }
+
+   static String formatBytes(long bytes) {
+      if (bytes >= WindowCacheConfig.MB && bytes % WindowCacheConfig.KB == 0) {
+         return bytes % WindowCacheConfig.MB == 0 ? bytes / WindowCacheConfig.MB + " MiB"
+               : String.format("%.1f MiB", (double) bytes / WindowCacheConfig.MB);
+      }
+      if (bytes >= WindowCacheConfig.KB && bytes % WindowCacheConfig.KB == 0) {
+         return bytes / WindowCacheConfig.KB + " KiB";
+      }
+      return bytes + " bytes";
+   }
+
+   private ObjectCacheSettings() {
+   }
+
+}
@@ -0,0 +1,156 @@
+package my.git.stats;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.ObjectId;
+
+import my.git.stats.LinesPerAuthor.DirBlameResult;
+import my.git.stats.LinesPerAuthor.FileBlameResult;
+
+/**
+ * Spreads the per-file blame work of {@link LinesPerAuthor} over a work-stealing
+ * {@link ForkJoinPool}. Every directory and every file becomes its own task, so
+ * idle workers steal work from busy ones regardless of how unevenly the files are
+ * distributed across directories.
+ * <p>
+ * JGit {@link org.eclipse.jgit.lib.Repository} instances share caches and object
+ * readers internally, so each worker thread opens its own {@link Git} handle on
+ * the repository. The per-author totals are never shared between threads: every
+ * task returns its own result and the results are combined when the tasks are
+ * joined, which keeps the merge free of any global lock.
+ */
+class ParallelBlame {
+
+   private class DirTask extends RecursiveTask<DirBlameResult> {
+
+      private static final long serialVersionUID = 1L;
+
+      private final BlameTargets.Dir dir;
+
+      DirTask(BlameTargets.Dir dir) {
+         this.dir = dir;
+      }
+
+      @Override
+      protected DirBlameResult compute() {
+         List<DirTask> dirTasks = new ArrayList<>();
+         List<FileTask> fileTasks = new ArrayList<>();
+         for (BlameTargets.Dir child : dir.dirs) {
+            dirTasks.add(new DirTask(child));
+         }
+         for (BlameTargets.Target target : dir.files) {
+            fileTasks.add(new FileTask(target));
+         }
+
+         List<ForkJoinTask<?>> tasks = new ArrayList<>(dirTasks.size() + fileTasks.size());
+         tasks.addAll(dirTasks);
+         tasks.addAll(fileTasks);
+         invokeAll(tasks);
+
+         List<FileBlameResult> fileBlames = new ArrayList<>();
+         List<DirBlameResult> dirBlames = new ArrayList<>();
+         for (FileTask task : fileTasks) {
+            FileBlameResult result = task.join();
+            if (result != null) {
+               fileBlames.add(result);
+            }
+         }
+         for (DirTask task : dirTasks) {
+            DirBlameResult result = task.join();
+            if (!result.childDirResults.isEmpty() || !result.childFileResults.isEmpty()) {
+               dirBlames.add(result);
+            }
+         }
+
+         return new DirBlameResult(dir.path, fileBlames, dirBlames);
+      }
+   }
+
+   private class FileTask extends RecursiveTask<FileBlameResult> {
+
+      private static final long serialVersionUID = 1L;
+
+      private final BlameTargets.Target target;
+
+      FileTask(BlameTargets.Target target) {
+         this.target = target;
+      }
+
+      @Override
+      protected FileBlameResult compute() {
+         FileBlameResult result = LinesPerAuthor.countFile(workerGit.get(), target, startCommit,
+               context);
+         return result != null && context.stream(result) ? null : result;
+      }
+   }
+
+   private final File repositoryDir;
+   private final int parallelism;
+   private final BlameContext context;
+
+   private ObjectId startCommit;
+
+   private final Queue<Git> openedRepos = new ConcurrentLinkedQueue<>();
+   private final ThreadLocal<Git> workerGit = ThreadLocal.withInitial(this::openWorkerGit);
+
+   /**
+    * @param repositoryDir the directory of the repository to blame, as accepted by
+    *                      {@link Git#open(File)}; this may be a bare repository
+    * @param parallelism   the number of worker threads to blame with
+    * @param context       the settings and counters shared by all workers
+    */
+   ParallelBlame(File repositoryDir, int parallelism, BlameContext context) {
+      if (parallelism < 1) {
+         throw new IllegalArgumentException("parallelism must be at least 1: " + parallelism);
+      }
+      this.repositoryDir = repositoryDir;
+      this.parallelism = parallelism;
+      this.context = context;
+   }
+
+   /**
+    * Blames the given targets on the worker pool.
+    *
+    * @param targets the files to blame
+    * @return the blame results, in the same shape as
+    *         {@link LinesPerAuthor#countFiles}
+    * @throws IOException if a worker could not open the repository
+    */
+   DirBlameResult countFiles(BlameTargets targets) throws IOException {
+      startCommit = targets.getCommitId();
+      context.metrics.addQueuedFiles(targets.getFileCount());
+      ForkJoinPool pool = new ForkJoinPool(parallelism);
+      try {
+         return pool.invoke(new DirTask(targets.getRoot()));
+      } catch (UncheckedIOException e) {
+         throw e.getCause();
+      } finally {
+         pool.shutdown();
+         Git git;
+         while ((git = openedRepos.poll()) != null) {
+            git.close();
+         }
+      }
+   }
+
+   private Git openWorkerGit() {
+      try {
+         Git git = Git.open(repositoryDir);
+         openedRepos.add(git);
+         return git;
+      } catch (IOException e) {
+         throw new UncheckedIOException(e);
+      }
+   }
+
+}
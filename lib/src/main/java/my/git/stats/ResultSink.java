@@ -0,0 +1,293 @@
+package my.git.stats;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+/**
+ * Receives the result of every file as soon as it has been blamed, so a
+ * {@link LinesPerAuthor} run does not have to keep the result of every file in
+ * memory. Only the per-author totals are kept, in an array indexed by author id,
+ * and the file results are written to a file in one of the
+ * {@link LinesPerAuthorOptions.OutputFormat output formats}.
+ * <p>
+ * Results may be added from any number of threads; the order of the files in
+ * the output is the order in which they were added.
+ */
+abstract class ResultSink implements Closeable {
+
+   /**
+    * Writes one JSON object per line, in the form
+    * <code>{"path":"a.txt","authors":{"Alice":3,"Bob":2}}</code>.
+    */
+   private static class JsonLinesSink extends ResultSink {
+      private final Writer out;
+
+      JsonLinesSink(File file, AuthorIds authorIds) throws IOException {
+         super(authorIds);
+         out = new BufferedWriter(
+               new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8));
+      }
+
+      private static void writeString(Writer out, String value) throws IOException {
+         out.write('"');
+         for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+               out.write('\\');
+               out.write(c);
+            } else if (c < 0x20) {
+               out.write(String.format("\\u%04x", (int) c));
+            } else {
+               out.write(c);
+            }
+         }
+         out.write('"');
+      }
+
+      @Override
+      public void close() throws IOException {
+         out.close();
+      }
+
+      @Override
+      void write(String path, AuthorCounts linesPerAuthor) throws IOException {
+         out.write("{\"path\":");
+         writeString(out, path);
+         out.write(",\"authors\":{");
+         for (int i = 0; i < linesPerAuthor.size(); i++) {
+            if (i > 0) {
+               out.write(',');
+            }
+            writeString(out, authorIds.getName(linesPerAuthor.getId(i)));
+            out.write(':');
+            out.write(Integer.toString(linesPerAuthor.getLines(i)));
+         }
+         out.write("}}\n");
+      }
+   }
+
+   /**
+    * Writes one "path,author,lines" row per author of every file, after a header
+    * row. Values are quoted as described in RFC 4180 where needed.
+    */
+   private static class CsvSink extends ResultSink {
+      private final Writer out;
+
+      CsvSink(File file, AuthorIds authorIds) throws IOException {
+         super(authorIds);
+         out = new BufferedWriter(
+               new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8));
+         out.write("path,author,lines\n");
+      }
+
+      private static String quote(String value) {
+         if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0
+               && value.indexOf('\r') < 0) {
+            return value;
+         }
+         return '"' + value.replace("\"", "\"\"") + '"';
+      }
+
+      @Override
+      public void close() throws IOException {
+         out.close();
+      }
+
+      @Override
+      void write(String path, AuthorCounts linesPerAuthor) throws IOException {
+         String quotedPath = quote(path);
+         for (int i = 0; i < linesPerAuthor.size(); i++) {
+            out.write(quotedPath);
+            out.write(',');
+            out.write(quote(authorIds.getName(linesPerAuthor.getId(i))));
+            out.write(',');
+            out.write(Integer.toString(linesPerAuthor.getLines(i)));
+            out.write('\n');
+         }
+      }
+   }
+
+   /**
+    * Writes a stream of records to a {@link DataOutputStream}. Every author name
+    * is written once, in an author record that precedes its first use, and file
+    * records refer to authors by id. See {@link ResultSink#readBinary}.
+    */
+   private static class BinarySink extends ResultSink {
+      private final DataOutputStream out;
+
+      /** The number of author ids whose names have been written. */
+      private int writtenAuthors;
+
+      BinarySink(File file, AuthorIds authorIds) throws IOException {
+         super(authorIds);
+         out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+         out.writeInt(BINARY_MAGIC);
+         out.writeInt(BINARY_VERSION);
+      }
+
+      @Override
+      public void close() throws IOException {
+         out.close();
+      }
+
+      @Override
+      void write(String path, AuthorCounts linesPerAuthor) throws IOException {
+         for (int i = 0; i < linesPerAuthor.size(); i++) {
+            // ids are dense, so every id below a new one is written as well
+            for (; writtenAuthors <= linesPerAuthor.getId(i); writtenAuthors++) {
+               out.writeByte(AUTHOR_RECORD);
+               out.writeInt(writtenAuthors);
+               out.writeUTF(authorIds.getName(writtenAuthors));
+            }
+         }
+         out.writeByte(FILE_RECORD);
+         out.writeUTF(path);
+         out.writeInt(linesPerAuthor.size());
+         for (int i = 0; i < linesPerAuthor.size(); i++) {
+            out.writeInt(linesPerAuthor.getId(i));
+            out.writeInt(linesPerAuthor.getLines(i));
+         }
+      }
+   }
+
+   private static final int BINARY_MAGIC = 0x4c505352;
+   private static final int BINARY_VERSION = 1;
+   private static final int AUTHOR_RECORD = 1;
+   private static final int FILE_RECORD = 2;
+
+   /**
+    * Opens a sink that writes to a file, replacing the file if it exists.
+    *
+    * @param format    the format to write
+    * @param file      the file to write
+    * @param authorIds the ids the results of the run are counted under
+    * @return the opened sink
+    * @throws IOException if the file cannot be created
+    */
+   static ResultSink open(LinesPerAuthorOptions.OutputFormat format, File file,
+         AuthorIds authorIds) throws IOException {
+      switch (format) {
+      case CSV:
+         return new CsvSink(file, authorIds);
+      case BINARY:
+         return new BinarySink(file, authorIds);
+      default:
+         return new JsonLinesSink(file, authorIds);
+      }
+   }
+
+   /**
+    * Reads the file results written by a binary sink.
+    *
+    * @param file     the file to read
+    * @param consumer receives the path and the lines per author of every file,
+    *                 in the order they were written
+    * @throws IOException if the file cannot be read or is not a binary result
+    */
+   static void readBinary(File file, BiConsumer<String, Map<String, Integer>> consumer)
+         throws IOException {
+      try (DataInputStream in = new DataInputStream(
+            new BufferedInputStream(new FileInputStream(file)))) {
+         if (in.readInt() != BINARY_MAGIC || in.readInt() != BINARY_VERSION) {
+            throw new IOException(file + " is not a binary LinesPerAuthor result");
+         }
+         List<String> authors = new ArrayList<>();
+         int record;
+         while ((record = in.read()) >= 0) {
+            if (record == AUTHOR_RECORD) {
+               int id = in.readInt();
+               String name = in.readUTF();
+               if (id != authors.size()) {
+                  throw new IOException("Unexpected author id " + id + " in " + file);
+               }
+               authors.add(name);
+            } else if (record == FILE_RECORD) {
+               String path = in.readUTF();
+               int authorCount = in.readInt();
+               Map<String, Integer> linesPerAuthor = new HashMap<>();
+               for (int i = 0; i < authorCount; i++) {
+                  linesPerAuthor.merge(authors.get(in.readInt()), in.readInt(), Integer::sum);
+               }
+               consumer.accept(path, linesPerAuthor);
+            } else {
+               throw new IOException("Unknown record type " + record + " in " + file);
+            }
+         }
+      }
+   }
+
+   final AuthorIds authorIds;
+
+   private long[] totals = new long[16];
+   private long[] ageTotals = new long[16 * LineAges.BUCKET_COUNT];
+
+   ResultSink(AuthorIds authorIds) {
+      this.authorIds = authorIds;
+   }
+
+   /**
+    * Adds the result of a file to the totals and writes it out.
+    *
+    * @param result the result of a blamed file
+    * @throws IOException if the result cannot be written
+    */
+   synchronized void add(LinesPerAuthor.FileBlameResult result) throws IOException {
+      AuthorCounts linesPerAuthor = result.linesPerAuthor;
+      for (int i = 0; i < linesPerAuthor.size(); i++) {
+         int id = linesPerAuthor.getId(i);
+         if (id >= totals.length) {
+            totals = Arrays.copyOf(totals, Math.max(totals.length * 2, id + 1));
+         }
+         totals[id] += linesPerAuthor.getLines(i);
+      }
+      if (totals.length * LineAges.BUCKET_COUNT > ageTotals.length) {
+         ageTotals = Arrays.copyOf(ageTotals, totals.length * LineAges.BUCKET_COUNT);
+      }
+      linesPerAuthor.addAgesTo(ageTotals);
+      write(result.path, linesPerAuthor);
+   }
+
+   /**
+    * @return the lines in each {@link LineAges age bucket} by author, of all files
+    *         added so far
+    */
+   synchronized Map<String, long[]> getAgeTotals() {
+      return LineAges.byAuthor(ageTotals, authorIds);
+   }
+
+   /**
+    * @return the lines per author of all files added so far
+    */
+   synchronized Map<String, Integer> getTotals() {
+      Map<String, Integer> map = new HashMap<>();
+      for (int id = 0; id < totals.length; id++) {
+         if (totals[id] > 0) {
+            map.put(authorIds.getName(id), (int) totals[id]);
+         }
+      }
+      return map;
+   }
+
+   /**
+    * Writes the result of a file. Calls are serialized by {@link #add}.
+    */
+   abstract void write(String path, AuthorCounts linesPerAuthor) throws IOException;
+
+}
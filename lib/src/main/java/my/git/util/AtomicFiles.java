@@ -0,0 +1,103 @@
+package my.git.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Reads and writes the binary files the tools keep between runs, such as
+ * caches and indexes. Every file starts with a magic number, which identifies
+ * the kind of file, and a format version. A file is written to a temporary file
+ * next to it, which then replaces it atomically, so an interrupted write leaves
+ * the previous file intact.
+ */
+public final class AtomicFiles {
+
+   /**
+    * Writes the content of a file after its header.
+    */
+   @FunctionalInterface
+   public interface ContentWriter {
+      void write(DataOutputStream out) throws IOException;
+   }
+
+   /**
+    * Reads the content of a file after its header.
+    *
+    * @param <T> the type of the content
+    */
+   @FunctionalInterface
+   public interface ContentReader<T> {
+      T read(DataInputStream in) throws IOException;
+   }
+
+   private AtomicFiles() {
+   }
+
+   /**
+    * Reads a file written by {@link #write}.
+    *
+    * @param <T>         the type of the content
+    * @param file        the file to read
+    * @param magic       the magic number the file must start with
+    * @param version     the format version the reader understands
+    * @param description what the file is, for example "an author index", for
+    *                    the message of the exception if it is not
+    * @param reader      reads the content after the header
+    * @return the content, or null if the file was written in another version of
+    *         the format
+    * @throws IOException if the file cannot be read or does not start with the
+    *                     magic number
+    */
+   public static <T> T read(File file, int magic, int version, String description,
+         ContentReader<T> reader) throws IOException {
+      try (DataInputStream in = new DataInputStream(
+            new BufferedInputStream(new FileInputStream(file)))) {
+         if (in.readInt() != magic) {
+            throw new IOException(file + " is not " + description);
+         }
+         if (in.readInt() != version) {
+            return null;
+         }
+         return reader.read(in);
+      }
+   }
+
+   /**
+    * Writes a file, replacing any previous file atomically. The parent
+    * directories are created if they do not exist.
+    *
+    * @param file    the file to write
+    * @param magic   the magic number the file starts with
+    * @param version the format version of the content
+    * @param writer  writes the content after the header
+    * @throws IOException if the file cannot be written
+    */
+   public static void write(File file, int magic, int version, ContentWriter writer)
+         throws IOException {
+      File parent = file.getAbsoluteFile().getParentFile();
+      parent.mkdirs();
+      // unlike File.createTempFile, this accepts names shorter than 3 characters
+      Path tempFile = Files.createTempFile(parent.toPath(), "." + file.getName() + "-", ".tmp");
+      try {
+         try (DataOutputStream out = new DataOutputStream(
+               new BufferedOutputStream(Files.newOutputStream(tempFile)))) {
+            out.writeInt(magic);
+            out.writeInt(version);
+            writer.write(out);
+         }
+         Files.move(tempFile, file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+               StandardCopyOption.ATOMIC_MOVE);
+      } finally {
+         Files.deleteIfExists(tempFile);
+      }
+   }
+
+}
@@ -0,0 +1,113 @@
+package my.git.mailmap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.stream.Collectors;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.EmptyProgressMonitor;
+import org.eclipse.jgit.lib.NullProgressMonitor;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class AuthorIndexTest {
+
+   @Rule
+   public TemporaryFolder folder = new TemporaryFolder();
+
+   private static void commit(Git git, String content, String name) throws Exception {
+      File file = new File(git.getRepository().getWorkTree(), "file.txt");
+      Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+      git.add().addFilepattern("file.txt").call();
+      PersonIdent ident = new PersonIdent(name, name.toLowerCase() + "@example.com");
+      git.commit().setMessage(content).setAuthor(ident).setCommitter(ident).call();
+   }
+
+   private static void assertSameAsScan(Git git, List<AuthorSummary> authors) throws Exception {
+      // the order differs, as the index lists older authors first
+      assertEquals(
+            GitRepoUtils.scanAuthors(git).stream().map(AuthorSummary::toString)
+                  .collect(Collectors.toSet()),
+            authors.stream().map(AuthorSummary::toString).collect(Collectors.toSet()));
+   }
+
+   @Test
+   public void testUpdateWalksNewCommitsOnly() throws Exception {
+      try (Git git = Git.init().setDirectory(folder.newFolder("repo")).call()) {
+         commit(git, "1", "Alice");
+         commit(git, "2", "Bob");
+         File file = AuthorIndex.getDefaultFile(git.getRepository());
+
+         AuthorIndex index = AuthorIndex.update(git, file);
+         assertEquals(2, index.getNewCommits());
+         assertSameAsScan(git, index.getAuthors());
+
+         assertEquals(0, AuthorIndex.update(git, file).getNewCommits());
+
+         commit(git, "3", "Alice");
+         git.checkout().setCreateBranch(true).setName("feature").call();
+         commit(git, "4", "Carol");
+         index = AuthorIndex.update(git, file);
+         assertEquals(2, index.getNewCommits());
+         assertSameAsScan(git, index.getAuthors());
+         assertEquals(2, index.getAuthors().stream()
+               .filter(summary -> summary.getAuthor().getName().equals("Alice")).findFirst()
+               .get().getCommitCount());
+      }
+   }
+
+   @Test
+   public void testCancelledUpdateIsNotSaved() throws Exception {
+      try (Git git = Git.init().setDirectory(folder.newFolder("repo")).call()) {
+         for (int i = 0; i < 300; i++) {
+            commit(git, Integer.toString(i), i < 10 ? "Alice" : "Bob");
+         }
+         File file = new File(folder.getRoot(), "index");
+         List<Author> found = new ArrayList<>();
+         try {
+            AuthorIndex.update(git, file, found::add, new EmptyProgressMonitor() {
+               @Override
+               public boolean isCancelled() {
+                  return true;
+               }
+            });
+            fail("the update was not cancelled");
+         } catch (CancellationException e) {
+            // expected
+         }
+         assertEquals(Arrays.asList(new Author("Bob", "bob@example.com")), found);
+         assertFalse(file.exists());
+
+         found.clear();
+         AuthorIndex index = AuthorIndex.update(git, file, found::add,
+               NullProgressMonitor.INSTANCE);
+         assertEquals(300, index.getNewCommits());
+         assertEquals(2, found.size());
+      }
+   }
+
+   @Test
+   public void testUnreadableIndexIsRebuilt() throws Exception {
+      try (Git git = Git.init().setDirectory(folder.newFolder("repo")).call()) {
+         commit(git, "1", "Alice");
+         File file = new File(folder.getRoot(), "index");
+         Files.write(file.toPath(), new byte[] { 1, 2, 3 });
+
+         AuthorIndex index = AuthorIndex.update(git, file);
+         assertEquals(1, index.getNewCommits());
+         assertSameAsScan(git, index.getAuthors());
+      }
+   }
+
+}
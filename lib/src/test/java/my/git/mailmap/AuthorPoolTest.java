@@ -0,0 +1,31 @@
+package my.git.mailmap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+public class AuthorPoolTest {
+
+   @Test
+   public void testIntern() {
+      AuthorPool pool = new AuthorPool();
+      Author first = new Author("John Smith", "john.smith@email.com");
+      Author second = new Author("John Smith", "john.smith@email.com");
+      assertSame(first, pool.intern(first));
+      assertSame(first, pool.intern(second));
+      assertSame(first, pool.get("John Smith", "john.smith@email.com"));
+      assertEquals(1, pool.size());
+   }
+
+   @Test
+   public void testDistinctAuthors() {
+      AuthorPool pool = new AuthorPool();
+      Author author = pool.get("John Smith", "john.smith@email.com");
+      assertNotSame(author, pool.get("John Smith", "John.Smith@email.com"));
+      assertNotSame(author, pool.get("J. Smith", "john.smith@email.com"));
+      assertEquals(3, pool.size());
+   }
+
+}
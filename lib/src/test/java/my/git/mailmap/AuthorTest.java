@@ -32,6 +32,13 @@ public class AuthorTest {
       assertEquals(author1.hashCode(), author2.hashCode());
    }
 
+   @Test
+   public void testAuthorEmailKey() {
+      assertEquals("john.smith@email.com",
+            new Author("John Smith", " John.Smith@Email.com ").getEmailKey());
+      assertEquals("", new Author("John Smith", null).getEmailKey());
+   }
+
    @Test
    public void testAuthorParse() {
       String authorString = "John Smith, john.smith@email.com";
@@ -0,0 +1,86 @@
+package my.git.mailmap;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class GitRepoUtilsTest {
+
+   @Rule
+   public TemporaryFolder folder = new TemporaryFolder();
+
+   private static void commit(Git git, String content, String name, String email, long time)
+         throws Exception {
+      File file = new File(git.getRepository().getWorkTree(), "file.txt");
+      Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+      git.add().addFilepattern("file.txt").call();
+      PersonIdent ident = new PersonIdent(name, email, Instant.ofEpochSecond(time),
+            ZoneOffset.UTC);
+      git.commit().setMessage(content).setAuthor(ident).setCommitter(ident).call();
+   }
+
+   @Test
+   public void testScanAuthors() throws Exception {
+      try (Git git = Git.init().setDirectory(folder.newFolder("repo")).call()) {
+         commit(git, "1", "Alice", "alice@example.com", 1000);
+         commit(git, "2", "Bob", "bob@example.com", 2000);
+         commit(git, "3", "Alice", "alice@example.com", 3000);
+         String mainBranch = git.getRepository().getBranch();
+         git.checkout().setCreateBranch(true).setName("feature").call();
+         commit(git, "4", "Zo\u00eb", "zoe@example.com", 4000);
+         commit(git, "5", "Alice", "alice@example.com", 5000);
+         git.checkout().setName(mainBranch).call();
+
+         List<AuthorSummary> authors = GitRepoUtils.scanAuthors(git);
+         assertEquals(3, authors.size());
+         assertEquals(new HashSet<>(GitRepoUtils.getAuthors(git)),
+               new HashSet<>(authors.stream().map(AuthorSummary::getAuthor).toList()));
+
+         AuthorSummary alice = authors.get(0);
+         assertEquals(new Author("Alice", "alice@example.com"), alice.getAuthor());
+         assertEquals(3, alice.getCommitCount());
+         assertEquals(Instant.ofEpochSecond(1000), alice.getFirstSeen());
+         assertEquals(Instant.ofEpochSecond(5000), alice.getLastSeen());
+
+         AuthorSummary zoe = authors.get(1);
+         assertEquals("Zo\u00eb", zoe.getAuthor().getName());
+         assertEquals(1, zoe.getCommitCount());
+         assertEquals(Instant.ofEpochSecond(4000), zoe.getLastSeen());
+      }
+   }
+
+   @Test
+   public void testScanAuthorsWithMailmap() throws Exception {
+      try (Git git = Git.init().setDirectory(folder.newFolder("repo")).call()) {
+         commit(git, "1", "alice", "old@example.com", 1000);
+         commit(git, "2", "Bob", "bob@example.com", 2000);
+         commit(git, "3", "Alice", "alice@example.com", 3000);
+         MailMapIndex mailmap = new MailMapIndex(Arrays.asList(
+               MailMapEntry.parseEntry("Alice Smith <alice@example.com> <old@example.com>"),
+               MailMapEntry.parseEntry("Alice Smith <alice@example.com>")));
+
+         List<AuthorSummary> authors = GitRepoUtils.scanAuthors(git, mailmap);
+         assertEquals(2, authors.size());
+         AuthorSummary alice = authors.get(0);
+         assertEquals(new Author("Alice Smith", "alice@example.com"), alice.getAuthor());
+         assertEquals(2, alice.getCommitCount());
+         assertEquals(Instant.ofEpochSecond(1000), alice.getFirstSeen());
+         assertEquals(Instant.ofEpochSecond(3000), alice.getLastSeen());
+         assertEquals(new Author("Bob", "bob@example.com"), authors.get(1).getAuthor());
+      }
+   }
+
+}
@@ -79,4 +79,26 @@ public class MailMapEntryTest {
 		MailMapEntry mailMapEntry = new MailMapEntry(primaryAuthor, secondaryAuthor);
 		assertEquals(" <johndoe@example.com>".trim(), mailMapEntry.toString().trim());
 	}
+
+	@Test
+	public void parseEntry_matchesRegexParser() {
+		String[] entries = { "", "   ", "# comment", "<a@example.com>", "A <a@example.com>",
+				"\tA  B\t<a@example.com>\t", "A <a@example.com> B <b@example.com>",
+				"A <a@example.com> <b@example.com>", "<a@example.com> B <b@example.com> junk",
+				"A <a@example.com> B <>", "A <> <a@example.com>", "A <a@example.com> B <b",
+				"A <a@example.com> B> C <c@example.com>", "A <a@<b>", "A <a@example.com",
+				"A a@example.com>", "no email", "A <a@example.com># B <b@example.com>",
+				"A <a#b@example.com>", "A <a@example.com> B <b@example.com> C <c@example.com>",
+				"A <a@example.com>B<b@example.com>" };
+		for (String entry : entries) {
+			MailMapEntry expected = MailMapEntry.parseEntryWithRegex(entry);
+			MailMapEntry actual = MailMapEntry.parseEntry(entry);
+			if (expected == null) {
+				assertNull(entry, actual);
+			} else {
+				assertEquals(entry, expected.getPrimary(), actual.getPrimary());
+				assertEquals(entry, expected.getSecondary(), actual.getSecondary());
+			}
+		}
+	}
 }
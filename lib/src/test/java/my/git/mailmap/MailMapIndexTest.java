@@ -0,0 +1,68 @@
+package my.git.mailmap;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+public class MailMapIndexTest {
+
+   private static MailMapIndex index(String... lines) {
+      return new MailMapIndex(
+            Arrays.stream(lines).map(MailMapEntry::parseEntry).collect(Collectors.toList()));
+   }
+
+   @Test
+   public void testNameOnlyEntry() {
+      MailMapIndex index = index("Alice Smith <alice@example.com>");
+      // as in git, an entry with one email keeps the email of the commit
+      assertEquals(new Author("Alice Smith", "ALICE@example.com"),
+            index.resolve("alice", "ALICE@example.com"));
+   }
+
+   @Test
+   public void testEmailEntry() {
+      MailMapIndex index = index("Alice Smith <alice@example.com> <Old@Example.com>");
+      assertEquals(new Author("Alice Smith", "alice@example.com"),
+            index.resolve("a smith", " old@example.COM"));
+   }
+
+   @Test
+   public void testNameAndEmailEntryTakesPrecedence() {
+      MailMapIndex index = index("Bob <bob@example.com> bob <shared@example.com>",
+            "Team <team@example.com> <shared@example.com>");
+      assertEquals(new Author("Bob", "bob@example.com"),
+            index.resolve("BOB", "shared@example.com"));
+      assertEquals(new Author("Team", "team@example.com"),
+            index.resolve("Carol", "shared@example.com"));
+   }
+
+   @Test
+   public void testNameEntryDoesNotMatchOtherNames() {
+      MailMapIndex index = index("Bob <bob@example.com> bob <shared@example.com>");
+      assertEquals(new Author("Carol", "shared@example.com"),
+            index.resolve("Carol", "shared@example.com"));
+   }
+
+   @Test
+   public void testEntriesAreMerged() {
+      MailMapIndex index = index("Alice Smith <old@example.com>",
+            "<alice@example.com> <old@example.com>");
+      assertEquals(new Author("Alice Smith", "alice@example.com"),
+            index.resolve("alice", "old@example.com"));
+      assertEquals(2, index.size());
+
+      index = index("<alice@example.com> <old@example.com>", "Alice Smith <old@example.com>");
+      assertEquals(new Author("Alice Smith", "alice@example.com"),
+            index.resolve("alice", "old@example.com"));
+   }
+
+   @Test
+   public void testUnknownIdentity() {
+      MailMapIndex index = index("Alice Smith <alice@example.com>");
+      assertEquals(new Author("Bob", "bob@example.com"), index.resolve("Bob", "bob@example.com"));
+   }
+
+}
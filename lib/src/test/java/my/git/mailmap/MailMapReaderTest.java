@@ -0,0 +1,111 @@
+package my.git.mailmap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class MailMapReaderTest {
+
+   @Rule
+   public TemporaryFolder folder = new TemporaryFolder();
+
+   private File createMailMap(int entries) throws Exception {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      out.write(new byte[] { (byte) 0xef, (byte) 0xbb, (byte) 0xbf });
+      for (int i = 0; i < entries; i++) {
+         String line;
+         switch (i % 4) {
+         case 0:
+            line = "Zo\u00eb " + i + " <zoe" + i + "@example.com>\n";
+            break;
+         case 1:
+            line = "Proper " + i + " <proper" + i + "@example.com> Commit <c" + i + ">\r\n";
+            break;
+         case 2:
+            line = "# comment " + i + "\n";
+            break;
+         default:
+            line = "<p" + i + "@example.com> <c" + i + "@example.com>\n";
+            break;
+         }
+         out.write(line.getBytes(StandardCharsets.UTF_8));
+      }
+      out.write("Last <last@example.com>".getBytes(StandardCharsets.UTF_8));
+      File file = folder.newFile();
+      Files.write(file.toPath(), out.toByteArray());
+      return file;
+   }
+
+   private static List<MailMapEntry> expected(int entries) {
+      List<MailMapEntry> expected = new ArrayList<>();
+      for (int i = 0; i < entries; i++) {
+         if (i % 4 == 0) {
+            expected.add(new MailMapEntry(new Author("Zo\u00eb " + i, "zoe" + i + "@example.com"),
+                  null));
+         } else if (i % 4 == 1) {
+            expected.add(new MailMapEntry(new Author("Proper " + i, "proper" + i + "@example.com"),
+                  new Author("Commit", "c" + i)));
+         } else if (i % 4 == 3) {
+            expected.add(new MailMapEntry(new Author("", "p" + i + "@example.com"),
+                  new Author("", "c" + i + "@example.com")));
+         }
+      }
+      expected.add(new MailMapEntry(new Author("Last", "last@example.com"), null));
+      return expected;
+   }
+
+   private static void assertEntries(List<MailMapEntry> expected, List<MailMapEntry> actual) {
+      assertEquals(expected.size(), actual.size());
+      for (int i = 0; i < expected.size(); i++) {
+         assertEquals(expected.get(i).getPrimary(), actual.get(i).getPrimary());
+         assertEquals(expected.get(i).getSecondary(), actual.get(i).getSecondary());
+      }
+   }
+
+   @Test
+   public void testRead() throws Exception {
+      File file = createMailMap(100);
+      assertEntries(expected(100), MailMapReader.read(file));
+   }
+
+   @Test
+   public void testReadInChunks() throws Exception {
+      File file = createMailMap(1000);
+      // chunk boundaries fall inside lines and inside multi-byte characters
+      for (int chunkSize : new int[] { 1, 7, 100, 4096 }) {
+         assertEntries(expected(1000), MailMapReader.read(file, 4, chunkSize));
+      }
+   }
+
+   @Test
+   public void testReadMappedFile() throws Exception {
+      // above the size up to which files are read rather than mapped
+      File file = createMailMap(50000);
+      assertTrue(file.length() > 1 << 20);
+      assertEntries(expected(50000), MailMapReader.read(file, 4, 1 << 16));
+   }
+
+   @Test
+   public void testReadWrittenMailMap() throws Exception {
+      File file = folder.newFile();
+      List<MailMapEntry> entries = expected(8);
+      MailMapEntry.writeMailMap(file.getPath(), entries);
+      assertEntries(entries, MailMapReader.read(file));
+   }
+
+   @Test
+   public void testReadEmpty() throws Exception {
+      assertTrue(MailMapReader.read(folder.newFile(), 2, 1).isEmpty());
+   }
+
+}
@@ -2,8 +2,12 @@ package my.git.mailmap.gui;
 
 import static org.junit.Assert.assertEquals;
 
+import java.util.Arrays;
 import java.util.Comparator;
 
+import javax.swing.event.ListDataEvent;
+import javax.swing.event.ListDataListener;
+
 import org.junit.Before;
 import org.junit.Test;
 
@@ -27,6 +31,33 @@ public class SortedListModelTest {
       assertEquals(Integer.valueOf(3), model.getElementAt(2));
    }
 
+   @Test
+   public void testAddAll() {
+      int[] events = new int[1];
+      model.addElement(3);
+      model.addListDataListener(new ListDataListener() {
+         @Override
+         public void contentsChanged(ListDataEvent e) {
+            events[0]++;
+         }
+
+         @Override
+         public void intervalAdded(ListDataEvent e) {
+            events[0]++;
+         }
+
+         @Override
+         public void intervalRemoved(ListDataEvent e) {
+            events[0]++;
+         }
+      });
+      model.addAll(Arrays.asList(4, 1, 2));
+      assertEquals(4, model.size());
+      assertEquals(Integer.valueOf(1), model.getElementAt(0));
+      assertEquals(Integer.valueOf(4), model.getElementAt(3));
+      assertEquals(1, events[0]);
+   }
+
    @Test
    public void testClear() {
       model.addElement(3);
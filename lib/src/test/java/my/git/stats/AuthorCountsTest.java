@@ -0,0 +1,40 @@
+package my.git.stats;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class AuthorCountsTest {
+
+   @Test
+   public void testAdd() {
+      AuthorCounts counts = new AuthorCounts(1);
+      counts.add(2, 3);
+      counts.add(0, 1);
+      counts.add(2, 4);
+      counts.add(5, 2);
+
+      assertEquals(3, counts.size());
+      assertEquals(2, counts.getId(0));
+      assertEquals(7, counts.getLines(0));
+      assertEquals(10, counts.total());
+
+      long[] totals = new long[6];
+      counts.addTo(totals);
+      counts.addTo(totals);
+      assertArrayEquals(new long[] { 2, 0, 14, 0, 0, 4 }, totals);
+   }
+
+   @Test
+   public void testInternAuthors() {
+      AuthorIds ids = new AuthorIds();
+      for (int i = 0; i < 100; i++) {
+         assertEquals(i, ids.intern("Author " + i));
+      }
+      assertEquals(42, ids.intern("Author 42"));
+      assertEquals("Author 99", ids.getName(99));
+      assertEquals(100, ids.size());
+   }
+
+}
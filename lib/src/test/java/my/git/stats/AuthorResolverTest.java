@@ -0,0 +1,92 @@
+package my.git.stats;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import org.eclipse.jgit.api.Git;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import my.git.mailmap.Author;
+import my.git.mailmap.MailMapEntry;
+import my.git.stats.LinesPerAuthor.DirBlameResult;
+
+public class AuthorResolverTest {
+
+   @Rule
+   public TemporaryFolder folder = new TemporaryFolder();
+
+   private static AuthorResolver resolver(String... lines) {
+      return new AuthorResolver(
+            Arrays.stream(lines).map(MailMapEntry::parseEntry).collect(Collectors.toList()));
+   }
+
+   @Test
+   public void testResolveNameOnlyEntry() {
+      AuthorResolver resolver = resolver("Alice Smith <alice@example.com>");
+      // as in git, an entry with one email keeps the email of the commit
+      assertEquals(new Author("Alice Smith", "ALICE@example.com"),
+            resolver.resolve("alice", "ALICE@example.com"));
+   }
+
+   @Test
+   public void testResolveEmailEntry() {
+      AuthorResolver resolver = resolver("Alice Smith <alice@example.com> <old@example.com>");
+      assertEquals(new Author("Alice Smith", "alice@example.com"),
+            resolver.resolve("a smith", "old@example.com"));
+   }
+
+   @Test
+   public void testNameAndEmailEntryTakesPrecedence() {
+      AuthorResolver resolver = resolver("Team <team@example.com> <shared@example.com>",
+            "Bob <bob@example.com> bob <shared@example.com>");
+      assertEquals(new Author("Bob", "bob@example.com"),
+            resolver.resolve("Bob", "shared@example.com"));
+      assertEquals(new Author("Team", "team@example.com"),
+            resolver.resolve("Carol", "shared@example.com"));
+   }
+
+   @Test
+   public void testResolveUnknownIdentity() {
+      AuthorResolver resolver = resolver("Alice Smith <alice@example.com>");
+      assertEquals(new Author("Bob", "bob@example.com"),
+            resolver.resolve("Bob", "bob@example.com"));
+   }
+
+   @Test
+   public void testFingerprint() {
+      assertEquals(resolver("A <a@example.com>").getFingerprint(),
+            resolver("A <a@example.com>").getFingerprint());
+      assertNotEquals(resolver("A <a@example.com>").getFingerprint(),
+            resolver("B <a@example.com>").getFingerprint());
+      // "Aa" and "BB" have the same String.hashCode
+      assertNotEquals(resolver("Aa <a@example.com>").getFingerprint(),
+            resolver("BB <a@example.com>").getFingerprint());
+      assertEquals(40, resolver("A <a@example.com>").getFingerprint().length());
+   }
+
+   @Test
+   public void testCountFilesWithMailmap() throws Exception {
+      try (Git git = TestRepos.createRepo(folder.newFolder("repo"))) {
+         BlameTargets targets = BlameTargets.fromRevision(git.getRepository(), "HEAD");
+         BlameContext context = new BlameContext(new BlameCounts());
+         context.authors = resolver("Team <team@example.com> <alice@example.com>",
+               "Team <team@example.com> <bob@example.com>");
+
+         Map<String, Integer> result = DirBlameResult
+               .sumResults(LinesPerAuthor.countFiles(git, targets, context), context.authorIds);
+         assertEquals(1, result.size());
+         assertEquals(Integer.valueOf(11), result.get("Team"));
+
+         Map<String, Integer> replay = DirBlameResult.sumResults(
+               HistoryReplay.countFiles(git.getRepository(), targets, context), context.authorIds);
+         assertEquals(result, replay);
+      }
+   }
+
+}
@@ -0,0 +1,133 @@
+package my.git.stats;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import my.git.mailmap.Author;
+import my.git.mailmap.MailMapEntry;
+
+public class AuthorStatsTest {
+
+   @Rule
+   public TemporaryFolder folder = new TemporaryFolder();
+
+   /**
+    * @return the start of a day in UTC, in seconds since the epoch
+    */
+   private static long day(String date) {
+      return LocalDate.parse(date).atStartOfDay(ZoneOffset.UTC).toEpochSecond();
+   }
+
+   private static Git createRepo(File directory) throws Exception {
+      Git git = Git.init().setDirectory(directory).call();
+      TestRepos.commit(git, "a.txt", "1\n2\n3\n", "Alice", day("2024-01-01"));
+      TestRepos.commit(git, "b.txt", "1\n", "Bob", day("2024-01-03"));
+      TestRepos.commit(git, "a.txt", "1\nx\n3\n4\n", "Alice", day("2024-01-10"));
+      TestRepos.commit(git, "b.txt", "", "Bob", day("2024-02-01"));
+      TestRepos.commit(git, "c.bin", "\0\1\2", "Robert", day("2024-02-02"));
+      return git;
+   }
+
+   @Test
+   public void testMonthly() throws Exception {
+      try (Git git = createRepo(folder.newFolder("repo"))) {
+         ObjectId head = git.getRepository().resolve("HEAD");
+         AuthorStats stats = AuthorStats.compute(git.getRepository(), head,
+               AuthorStats.Period.MONTH, null, 2);
+
+         AuthorStats.Row alice = stats.get("Alice", LocalDate.parse("2024-01-01"));
+         assertEquals(2, alice.getCommits());
+         assertEquals(5, alice.getLinesAdded());
+         assertEquals(1, alice.getLinesRemoved());
+         AuthorStats.Row bob = stats.get("Bob", LocalDate.parse("2024-02-01"));
+         assertEquals(1, bob.getCommits());
+         assertEquals(0, bob.getLinesAdded());
+         assertEquals(1, bob.getLinesRemoved());
+         assertEquals(0, stats.get("Robert", LocalDate.parse("2024-02-01")).getLinesAdded());
+         assertEquals(4, stats.getRows().size());
+      }
+   }
+
+   @Test
+   public void testWeeklyWithMailmap() throws Exception {
+      try (Git git = createRepo(folder.newFolder("repo"))) {
+         ObjectId head = git.getRepository().resolve("HEAD");
+         AuthorResolver authors = new AuthorResolver(Arrays.asList(new MailMapEntry(
+               new Author("Bob", "bob@example.com"), new Author("", "robert@example.com"))));
+         AuthorStats stats = AuthorStats.compute(git.getRepository(), head,
+               AuthorStats.Period.WEEK, authors, 0);
+
+         // 2024-01-01 is a Monday, and 2024-02-01 a Thursday
+         assertEquals(1, stats.get("Alice", LocalDate.parse("2024-01-01")).getCommits());
+         assertEquals(1, stats.get("Alice", LocalDate.parse("2024-01-08")).getCommits());
+         assertEquals(2, stats.get("Bob", LocalDate.parse("2024-01-29")).getCommits());
+         assertNull(stats.get("Robert", LocalDate.parse("2024-01-29")));
+      }
+   }
+
+   @Test
+   public void testMergeCommit() throws Exception {
+      try (Git git = Git.init().setDirectory(folder.newFolder("repo")).call()) {
+         TestRepos.commit(git, "a.txt", "1\n2\n", "Alice", day("2024-03-01"));
+         String mainBranch = git.getRepository().getBranch();
+         git.checkout().setCreateBranch(true).setName("side").call();
+         RevCommit side = TestRepos.commit(git, "b.txt", "1\n2\n3\n", "Bob", day("2024-03-02"));
+         git.checkout().setName(mainBranch).call();
+         TestRepos.commit(git, "a.txt", "1\nx\n", "Alice", day("2024-03-03"));
+         git.merge().include(side).setCommit(false).call();
+         PersonIdent carol = new PersonIdent("Carol", "carol@example.com",
+               Instant.ofEpochSecond(day("2024-03-04")), ZoneOffset.UTC);
+         RevCommit merge = git.commit().setMessage("merge").setAuthor(carol).setCommitter(carol)
+               .call();
+         assertEquals(2, merge.getParentCount());
+
+         AuthorStats stats = AuthorStats.compute(git.getRepository(), merge,
+               AuthorStats.Period.MONTH, null, 1);
+         LocalDate march = LocalDate.parse("2024-03-01");
+         // the merge is a commit, but the changes it brings in are only counted
+         // for the commits that made them
+         AuthorStats.Row merger = stats.get("Carol", march);
+         assertEquals(1, merger.getCommits());
+         assertEquals(0, merger.getLinesAdded());
+         assertEquals(0, merger.getLinesRemoved());
+         assertEquals(3, stats.get("Bob", march).getLinesAdded());
+         AuthorStats.Row alice = stats.get("Alice", march);
+         assertEquals(2, alice.getCommits());
+         assertEquals(3, alice.getLinesAdded());
+         assertEquals(1, alice.getLinesRemoved());
+      }
+   }
+
+   @Test
+   public void testRename() throws Exception {
+      try (Git git = Git.init().setDirectory(folder.newFolder("repo")).call()) {
+         TestRepos.commit(git, "old.txt", "1\n2\n3\n4\n5\n6\n7\n8\n9\n10\n", "Alice",
+               day("2024-03-01"));
+         git.rm().addFilepattern("old.txt").call();
+         // git mv with a change to one line, which is similar enough to be a rename
+         RevCommit head = TestRepos.commit(git, "new.txt",
+               "1\n2\n3\n4\n5\n6\n7\n8\n9\nx\n", "Bob", day("2024-03-02"));
+
+         AuthorStats stats = AuthorStats.compute(git.getRepository(), head,
+               AuthorStats.Period.MONTH, null, 1);
+         AuthorStats.Row bob = stats.get("Bob", LocalDate.parse("2024-03-01"));
+         assertEquals(1, bob.getLinesAdded());
+         assertEquals(1, bob.getLinesRemoved());
+      }
+   }
+
+}
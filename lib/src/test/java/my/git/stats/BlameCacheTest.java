@@ -0,0 +1,144 @@
+package my.git.stats;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.ObjectId;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import my.git.stats.LinesPerAuthor.DirBlameResult;
+
+public class BlameCacheTest {
+
+   private static final ObjectId BLOB_1 = ObjectId
+         .fromString("1111111111111111111111111111111111111111");
+   private static final ObjectId BLOB_2 = ObjectId
+         .fromString("2222222222222222222222222222222222222222");
+   private static final ObjectId BLOB_3 = ObjectId
+         .fromString("3333333333333333333333333333333333333333");
+
+   @Rule
+   public TemporaryFolder folder = new TemporaryFolder();
+
+   private final AuthorIds authorIds = new AuthorIds();
+
+   private AuthorCounts lines(String author, int count) {
+      AuthorCounts counts = new AuthorCounts();
+      counts.add(authorIds.intern(author), count);
+      return counts;
+   }
+
+   private Map<String, Integer> get(BlameCache cache, ObjectId blobId, String path,
+         String options) {
+      AuthorCounts counts = cache.get(blobId, path, options, authorIds, 0);
+      if (counts == null) {
+         return null;
+      }
+      Map<String, Integer> map = new HashMap<>();
+      for (int i = 0; i < counts.size(); i++) {
+         map.put(authorIds.getName(counts.getId(i)), counts.getLines(i));
+      }
+      return map;
+   }
+
+   private void put(BlameCache cache, ObjectId blobId, String path, String author, int count) {
+      cache.put(blobId, path, "opts", lines(author, count), authorIds);
+   }
+
+   @Test
+   public void testGetAndPut() throws Exception {
+      BlameCache cache = BlameCache.open(new File(folder.getRoot(), "cache"), 10);
+      put(cache, BLOB_1, "a.txt", "Alice", 3);
+
+      assertEquals(Map.of("Alice", 3), get(cache, BLOB_1, "a.txt", "opts"));
+      assertNull(get(cache, BLOB_1, "b.txt", "opts"));
+      assertNull(get(cache, BLOB_1, "a.txt", "other"));
+      assertNull(get(cache, BLOB_2, "a.txt", "opts"));
+      assertEquals(1, cache.getHits());
+      assertEquals(3, cache.getMisses());
+   }
+
+   @Test
+   public void testLeastRecentlyUsedEviction() throws Exception {
+      BlameCache cache = BlameCache.open(new File(folder.getRoot(), "cache"), 2);
+      put(cache, BLOB_1, "a.txt", "Alice", 1);
+      put(cache, BLOB_2, "b.txt", "Bob", 2);
+      get(cache, BLOB_1, "a.txt", "opts");
+      put(cache, BLOB_3, "c.txt", "Carol", 3);
+
+      assertEquals(2, cache.size());
+      assertNotNull(get(cache, BLOB_1, "a.txt", "opts"));
+      assertNull(get(cache, BLOB_2, "b.txt", "opts"));
+      assertNotNull(get(cache, BLOB_3, "c.txt", "opts"));
+   }
+
+   @Test
+   public void testSaveAndReopen() throws Exception {
+      File file = new File(folder.getRoot(), "cache");
+      BlameCache cache = BlameCache.open(file, 10);
+      put(cache, BLOB_1, "a.txt", "Alice", 3);
+      cache.save();
+
+      BlameCache reopened = BlameCache.open(file, 10);
+      assertEquals(1, reopened.size());
+      assertEquals(Map.of("Alice", 3), get(reopened, BLOB_1, "a.txt", "opts"));
+   }
+
+   @Test
+   public void testAgesAreMeasuredFromReferenceTimeOfGet() throws Exception {
+      int day = 24 * 60 * 60;
+      File file = new File(folder.getRoot(), "cache");
+      BlameCache cache = BlameCache.open(file, 10);
+      AuthorCounts counts = new AuthorCounts();
+      counts.add(authorIds.intern("Alice"), 2, 0, 10L * day);
+      counts.add(authorIds.intern("Alice"), 1);
+      cache.put(BLOB_1, "a.txt", "opts", counts, authorIds);
+      cache.save();
+
+      AuthorCounts cached = BlameCache.open(file, 10).get(BLOB_1, "a.txt", "opts", authorIds,
+            100L * day);
+      assertEquals(3, cached.getLines(0));
+      assertEquals(0, cached.getAgeLines(0, 0));
+      assertEquals(2, cached.getAgeLines(0, 1));
+   }
+
+   @Test
+   public void testOpenUnreadableFile() throws Exception {
+      File file = folder.newFile("cache");
+      Files.write(file.toPath(), "not a cache".getBytes());
+      assertEquals(0, BlameCache.open(file, 10).size());
+   }
+
+   @Test
+   public void testCountFilesUsesCache() throws Exception {
+      try (Git git = TestRepos.createRepo(folder.newFolder("repo"))) {
+         BlameTargets targets = BlameTargets.fromRevision(git.getRepository(), "HEAD");
+         BlameCache cache = BlameCache.open(new File(folder.getRoot(), "cache"), 10);
+
+         BlameContext first = new BlameContext(new BlameCounts());
+         first.cache = cache;
+         Map<String, Integer> expected = DirBlameResult
+               .sumResults(LinesPerAuthor.countFiles(git, targets, first), first.authorIds);
+         assertEquals(0, cache.getHits());
+         assertEquals(3, cache.size());
+
+         BlameContext second = new BlameContext(new BlameCounts());
+         second.cache = cache;
+         Map<String, Integer> actual = DirBlameResult
+               .sumResults(LinesPerAuthor.countFiles(git, targets, second), second.authorIds);
+         assertEquals(expected, actual);
+         assertEquals(3, cache.getHits());
+         assertEquals(11, second.counts.getLines());
+      }
+   }
+
+}
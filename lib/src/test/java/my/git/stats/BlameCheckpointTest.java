@@ -0,0 +1,159 @@
+package my.git.stats;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.ObjectId;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import my.git.stats.LinesPerAuthor.DirBlameResult;
+
+public class BlameCheckpointTest {
+
+   @Rule
+   public TemporaryFolder folder = new TemporaryFolder();
+
+   @Test
+   public void testResumeMatchesUninterruptedRun() throws Exception {
+      try (Git git = TestRepos.createRepo(folder.newFolder("repo"))) {
+         BlameTargets targets = BlameTargets.fromRevision(git.getRepository(), "HEAD");
+         File journal = new File(folder.getRoot(), "checkpoint");
+
+         // a run that only got through the files in dir before it failed
+         BlameContext failedContext = new BlameContext(new BlameCounts());
+         failedContext.checkpoint = BlameCheckpoint.create(journal, targets.getCommitId(), null,
+               failedContext.getOptionsKey(), 0);
+         BlameTargets finishedTargets = new BlameFilter(Arrays.asList("dir/**"),
+               Collections.emptyList(), 0).apply(git.getRepository(), targets);
+         LinesPerAuthor.countFiles(git, finishedTargets, failedContext);
+         failedContext.checkpoint.close();
+         // a record the failed run only wrote in part
+         try (OutputStream out = new FileOutputStream(journal, true)) {
+            out.write(new byte[] { 0, 5, 'a', '.' });
+         }
+
+         BlameCounts counts = new BlameCounts();
+         BlameContext context = new BlameContext(counts);
+         context.checkpoint = BlameCheckpoint.resume(journal, targets.getCommitId(), null,
+               context.getOptionsKey(), 0);
+         assertEquals(2, context.checkpoint.size());
+         DirBlameResult resumed = LinesPerAuthor.countFiles(git, targets, context);
+         context.checkpoint.close();
+         assertEquals(2, context.checkpoint.getResumedFiles());
+         assertEquals(3, context.checkpoint.size());
+         assertEquals(3, counts.getFiles());
+         assertEquals(11, counts.getLines());
+
+         BlameContext fullContext = new BlameContext(new BlameCounts());
+         DirBlameResult full = LinesPerAuthor.countFiles(git, targets, fullContext);
+         assertEquals(DirBlameResult.sumResults(full, fullContext.authorIds),
+               DirBlameResult.sumResults(resumed, context.authorIds));
+         assertArrayEquals(
+               DirBlameResult.sumAges(full, fullContext.authorIds).get("Alice"),
+               DirBlameResult.sumAges(resumed, context.authorIds).get("Alice"));
+      }
+   }
+
+   @Test
+   public void testChangedFileIsBlamedAgain() throws Exception {
+      try (Git git = TestRepos.createRepo(folder.newFolder("repo"))) {
+         BlameTargets targets = BlameTargets.fromRevision(git.getRepository(), "HEAD");
+         BlameTargets.Target target = targets.getRoot().files.get(0);
+         BlameTargets.Target changedTarget = new BlameTargets.Target(target.path,
+               ObjectId.zeroId());
+         File journal = new File(folder.getRoot(), "checkpoint");
+         BlameContext context = new BlameContext(new BlameCounts());
+         try (BlameCheckpoint checkpoint = BlameCheckpoint.create(journal, null, null,
+               context.getOptionsKey(), 60)) {
+            checkpoint.add(target, LinesPerAuthor.countFile(git, target, targets.getCommitId(),
+                  context), context.authorIds);
+         }
+         try (BlameCheckpoint checkpoint = BlameCheckpoint.resume(journal, null, null,
+               context.getOptionsKey(), 60)) {
+            assertNull(checkpoint.get(changedTarget, context.authorIds, context.referenceTime));
+            assertEquals(5, checkpoint.get(target, context.authorIds, context.referenceTime)
+                  .linesPerAuthor.total());
+         }
+      }
+   }
+
+   @Test
+   public void testEditedWorkTreeFileIsBlamedAgain() throws Exception {
+      try (Git git = TestRepos.createRepo(folder.newFolder("repo"))) {
+         File workTree = git.getRepository().getWorkTree();
+         BlameTargets targets = BlameTargets.fromWorkTree(workTree,
+               new File[] { new File(workTree, "a.txt"), new File(workTree, "dir") });
+         File journal = new File(folder.getRoot(), "checkpoint");
+
+         BlameContext failedContext = new BlameContext(new BlameCounts());
+         failedContext.checkpoint = BlameCheckpoint.create(journal, null, workTree,
+               failedContext.getOptionsKey(), 0);
+         LinesPerAuthor.countFiles(git, targets, failedContext);
+         failedContext.checkpoint.close();
+
+         // a file edited on disk after the failed run
+         Files.write(new File(workTree, "a.txt").toPath(),
+               "1\n2\n3\n4\n5\n6\n".getBytes(StandardCharsets.UTF_8));
+
+         BlameContext context = new BlameContext(new BlameCounts());
+         context.checkpoint = BlameCheckpoint.resume(journal, null, workTree,
+               context.getOptionsKey(), 0);
+         DirBlameResult resumed = LinesPerAuthor.countFiles(git, targets, context);
+         context.checkpoint.close();
+         assertEquals(2, context.checkpoint.getResumedFiles());
+
+         BlameContext fullContext = new BlameContext(new BlameCounts());
+         DirBlameResult full = LinesPerAuthor.countFiles(git, targets, fullContext);
+         assertEquals(DirBlameResult.sumResults(full, fullContext.authorIds),
+               DirBlameResult.sumResults(resumed, context.authorIds));
+         assertEquals(Integer.valueOf(12), DirBlameResult.sumResults(resumed, context.authorIds)
+               .values().stream().reduce(0, Integer::sum));
+      }
+   }
+
+   @Test
+   public void testResumedAgesUseReferenceTimeOfResumedRun() throws Exception {
+      try (Git git = TestRepos.createRepo(folder.newFolder("repo"))) {
+         BlameTargets targets = BlameTargets.fromRevision(git.getRepository(), "HEAD");
+         BlameTargets.Target target = targets.getRoot().files.get(0);
+         File journal = new File(folder.getRoot(), "checkpoint");
+         BlameContext context = new BlameContext(new BlameCounts());
+         try (BlameCheckpoint checkpoint = BlameCheckpoint.create(journal, null, null,
+               context.getOptionsKey(), 60)) {
+            checkpoint.add(target, LinesPerAuthor.countFile(git, target, targets.getCommitId(),
+                  context), context.authorIds);
+         }
+
+         // a run resumed more than a year later
+         long laterTime = context.referenceTime + 400L * 24 * 60 * 60;
+         try (BlameCheckpoint checkpoint = BlameCheckpoint.resume(journal, null, null,
+               context.getOptionsKey(), 60)) {
+            AuthorCounts resumed = checkpoint.get(target, context.authorIds, laterTime)
+                  .linesPerAuthor;
+            assertEquals(0, resumed.getAgeLines(0, 0));
+            assertEquals(resumed.getLines(0),
+                  resumed.getAgeLines(0, LineAges.BUCKET_COUNT - 1));
+         }
+      }
+   }
+
+   @Test(expected = IllegalArgumentException.class)
+   public void testResumeOtherOptions() throws Exception {
+      File journal = new File(folder.getRoot(), "checkpoint");
+      BlameCheckpoint.create(journal, null, null, "fast", 0).close();
+      BlameCheckpoint.resume(journal, null, null, "accurate", 0);
+   }
+
+}
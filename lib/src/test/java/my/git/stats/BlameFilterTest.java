@@ -0,0 +1,90 @@
+package my.git.stats;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import org.eclipse.jgit.api.Git;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import my.git.stats.LinesPerAuthor.DirBlameResult;
+
+public class BlameFilterTest {
+
+   @Rule
+   public TemporaryFolder folder = new TemporaryFolder();
+
+   private static boolean matches(String glob, String path) {
+      return Pattern.matches(BlameFilter.globToRegex(glob), path);
+   }
+
+   private static Git createRepo(File directory) throws Exception {
+      Git git = TestRepos.createRepo(directory);
+      TestRepos.commit(git, "img/logo.png", "PNG\0\1\2", "Carol");
+      TestRepos.commit(git, "gen/big.txt", "x\n".repeat(1000), "Carol");
+      TestRepos.commit(git, "gen/small.txt", "x\n", "Carol");
+      return git;
+   }
+
+   @Test
+   public void testGlobs() {
+      assertTrue(matches("*.txt", "a.txt"));
+      assertTrue(matches("*.txt", "dir/sub/c.txt"));
+      assertFalse(matches("*.txt", "a.txt.orig"));
+      assertTrue(matches("dir/*.txt", "dir/b.txt"));
+      assertFalse(matches("dir/*.txt", "dir/sub/c.txt"));
+      assertTrue(matches("dir/**", "dir/sub/c.txt"));
+      assertTrue(matches("**/sub/*.txt", "dir/sub/c.txt"));
+      assertTrue(matches("**/a.txt", "a.txt"));
+      assertTrue(matches("/a.?xt", "a.txt"));
+      assertFalse(matches("/a.txt", "dir/a.txt"));
+   }
+
+   @Test
+   public void testSkipsByRule() throws Exception {
+      try (Git git = createRepo(folder.newFolder("repo"))) {
+         BlameFilter filter = new BlameFilter(Collections.emptyList(), Arrays.asList("dir/sub/**"),
+               100);
+         BlameTargets targets = filter.apply(git.getRepository(),
+               BlameTargets.fromRevision(git.getRepository(), "HEAD"));
+
+         assertEquals(3, targets.getFileCount());
+         assertEquals(1, filter.getSkipped(BlameFilter.Rule.PATH));
+         assertEquals(1, filter.getSkipped(BlameFilter.Rule.SIZE));
+         assertEquals(1, filter.getSkipped(BlameFilter.Rule.BINARY));
+         // img only held the binary file
+         assertEquals(2, targets.getRoot().dirs.size());
+
+         BlameContext context = new BlameContext(new BlameCounts());
+         Map<String, Integer> result = DirBlameResult
+               .sumResults(LinesPerAuthor.countFiles(git, targets, context), context.authorIds);
+         assertEquals(Integer.valueOf(3), result.get("Alice"));
+         assertEquals(Integer.valueOf(1), result.get("Carol"));
+      }
+   }
+
+   @Test
+   public void testWorkTreeTargets() throws Exception {
+      try (Git git = createRepo(folder.newFolder("repo"))) {
+         File workTree = git.getRepository().getWorkTree();
+         BlameFilter filter = new BlameFilter(Arrays.asList("*.txt", "*.png"),
+               Collections.emptyList(), 0);
+         BlameTargets targets = filter.apply(git.getRepository(),
+               BlameTargets.fromWorkTree(workTree, workTree.listFiles()));
+
+         assertEquals(5, targets.getFileCount());
+         assertEquals(0, filter.getSkipped(BlameFilter.Rule.PATH));
+         assertEquals(0, filter.getSkipped(BlameFilter.Rule.SIZE));
+         assertEquals(1, filter.getSkipped(BlameFilter.Rule.BINARY));
+      }
+   }
+
+}
@@ -0,0 +1,100 @@
+package my.git.stats;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.eclipse.jgit.api.Git;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class BlameMetricsTest {
+
+   @Rule
+   public TemporaryFolder folder = new TemporaryFolder();
+
+   @Test
+   public void testBuckets() {
+      for (long micros : new long[] { 0, 1, 7, 8, 15, 16, 1000, 123456789 }) {
+         int bucket = BlameMetrics.bucketOf(micros);
+         assertTrue(BlameMetrics.bucketStart(bucket) <= micros);
+         assertTrue(BlameMetrics.bucketStart(bucket + 1) > micros);
+      }
+   }
+
+   @Test
+   public void testLatencyPercentiles() {
+      BlameMetrics metrics = new BlameMetrics(new BlameCounts());
+      assertEquals(0, metrics.getLatencyP50Millis(), 0);
+      for (int i = 1; i <= 100; i++) {
+         metrics.fileFinished("file" + i, i * 1_000_000L);
+      }
+
+      // within the 1/8 resolution of the buckets
+      assertEquals(50, metrics.getLatencyP50Millis(), 50 / 8.0);
+      assertEquals(95, metrics.getLatencyP95Millis(), 95 / 8.0);
+      assertEquals(99, metrics.getLatencyP99Millis(), 99 / 8.0);
+
+      List<String> slowest = metrics.getSlowestFiles();
+      assertEquals(10, slowest.size());
+      assertTrue(slowest.get(0).startsWith("file100: "));
+      assertTrue(slowest.get(9).startsWith("file91: "));
+   }
+
+   @Test
+   public void testCountFilesRecordsEveryFile() throws Exception {
+      try (Git git = TestRepos.createRepo(folder.newFolder("repo"))) {
+         BlameContext context = new BlameContext(new BlameCounts());
+         LinesPerAuthor.countFiles(git, BlameTargets.fromRevision(git.getRepository(), "HEAD"),
+               context);
+
+         assertEquals(0, context.metrics.getPendingFiles());
+         assertEquals(0, context.metrics.getActiveFiles());
+         assertEquals(3, context.metrics.getSlowestFiles().size());
+         assertEquals(11, context.metrics.getLines());
+      }
+   }
+
+   @Test
+   public void testRegister() throws Exception {
+      BlameCounts counts = new BlameCounts();
+      counts.addFile();
+      MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+      ObjectName name = new ObjectName(BlameMetrics.OBJECT_NAME);
+      try (BlameMetrics metrics = new BlameMetrics(counts)) {
+         metrics.register();
+         assertEquals(1L, server.getAttribute(name, "Files"));
+      }
+      assertFalse(server.isRegistered(name));
+   }
+
+   @Test
+   public void testProgressLineLabelsIntervals() throws Exception {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      try (BlameMetrics metrics = new BlameMetrics(new BlameCounts());
+            PrintStream out = new PrintStream(bytes, true, StandardCharsets.UTF_8)) {
+         metrics.fileFinished("a.txt", 2_000_000L);
+         metrics.startLogging(1, out);
+         long deadline = System.currentTimeMillis() + 10_000;
+         while (!bytes.toString(StandardCharsets.UTF_8).contains("\n")
+               && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+         }
+      }
+      String line = bytes.toString(StandardCharsets.UTF_8);
+      assertTrue(line, line.contains("; last 1s: "));
+      assertTrue(line, line.contains("; since start: "));
+      assertTrue(line, line.contains("slowest a.txt: 2.0 ms"));
+   }
+
+}
@@ -0,0 +1,91 @@
+package my.git.stats;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Locale;
+import java.util.Map;
+
+import org.eclipse.jgit.api.Git;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import my.git.stats.LinesPerAuthor.DirBlameResult;
+
+public class BlameProfileTest {
+
+   @Rule
+   public TemporaryFolder folder = new TemporaryFolder();
+
+   private static Map<String, Integer> blame(Git git, BlameProfile profile) throws Exception {
+      BlameContext context = new BlameContext(new BlameCounts());
+      context.profile = profile;
+      BlameTargets targets = BlameTargets.fromRevision(git.getRepository(), "HEAD");
+      return DirBlameResult.sumResults(LinesPerAuthor.countFiles(git, targets, context),
+            context.authorIds);
+   }
+
+   @Test
+   public void testParse() {
+      assertEquals(BlameProfile.FAST, BlameProfile.parse("fast"));
+      assertEquals(BlameProfile.WHITESPACE_INSENSITIVE,
+            BlameProfile.parse("whitespace-insensitive"));
+   }
+
+   @Test
+   public void testParseInTurkishLocale() {
+      Locale defaultLocale = Locale.getDefault();
+      Locale.setDefault(new Locale("tr", "TR"));
+      try {
+         assertEquals(BlameProfile.WHITESPACE_INSENSITIVE,
+               BlameProfile.parse("whitespace-insensitive"));
+      } finally {
+         Locale.setDefault(defaultLocale);
+      }
+   }
+
+   @Test
+   public void testName() {
+      for (BlameProfile profile : BlameProfile.values()) {
+         assertEquals(profile, BlameProfile.parse(profile.getName()));
+      }
+      assertEquals("whitespace-insensitive", BlameProfile.WHITESPACE_INSENSITIVE.getName());
+   }
+
+   @Test
+   public void testOptionsKey() {
+      BlameContext context = new BlameContext(new BlameCounts());
+      assertEquals("ws-ignore-all", context.getOptionsKey());
+      context.profile = BlameProfile.FAST;
+      assertNotEquals("ws-ignore-all", context.getOptionsKey());
+   }
+
+   @Test
+   public void testWhitespace() throws Exception {
+      try (Git git = Git.init().setDirectory(folder.newFolder("repo")).call()) {
+         TestRepos.commit(git, "a.txt", "a\nb\nc\n", "Alice");
+         TestRepos.commit(git, "a.txt", "  a\n  b\nc\n", "Bob");
+
+         assertEquals(Map.of("Alice", 3), blame(git, BlameProfile.WHITESPACE_INSENSITIVE));
+         assertEquals(Map.of("Alice", 1, "Bob", 2), blame(git, BlameProfile.ACCURATE));
+      }
+   }
+
+   @Test
+   public void testRenames() throws Exception {
+      try (Git git = Git.init().setDirectory(folder.newFolder("repo")).call()) {
+         TestRepos.commit(git, "a.txt", "a\nb\nc\n", "Alice");
+         File workTree = git.getRepository().getWorkTree();
+         Files.move(new File(workTree, "a.txt").toPath(), new File(workTree, "b.txt").toPath());
+         git.rm().addFilepattern("a.txt").call();
+         TestRepos.commit(git, "b.txt", "a\nb\nc\nd\n", "Bob");
+
+         assertEquals(Map.of("Alice", 3, "Bob", 1), blame(git, BlameProfile.ACCURATE));
+         assertEquals(Map.of("Bob", 4), blame(git, BlameProfile.FAST));
+      }
+   }
+
+}
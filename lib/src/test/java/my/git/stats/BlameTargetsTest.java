@@ -0,0 +1,72 @@
+package my.git.stats;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Map;
+
+import org.eclipse.jgit.api.Git;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import my.git.stats.LinesPerAuthor.DirBlameResult;
+
+public class BlameTargetsTest {
+
+   @Rule
+   public TemporaryFolder folder = new TemporaryFolder();
+
+   @Test
+   public void testFromRevisionSkipsUntrackedFiles() throws Exception {
+      try (Git git = TestRepos.createRepo(folder.newFolder("repo"))) {
+         File workTree = git.getRepository().getWorkTree();
+         Files.write(new File(workTree, "untracked.txt").toPath(), "x\n".getBytes());
+
+         BlameTargets targets = BlameTargets.fromRevision(git.getRepository(), "HEAD");
+         assertNotNull(targets.getCommitId());
+         assertEquals(1, targets.getRoot().files.size());
+         assertEquals("a.txt", targets.getRoot().files.get(0).path);
+         assertNotNull(targets.getRoot().files.get(0).blobId);
+         assertEquals("dir", targets.getRoot().dirs.get(0).path);
+         assertEquals("dir/sub/c.txt", targets.getRoot().dirs.get(0).dirs.get(0).files.get(0).path);
+
+         BlameTargets workTreeTargets = BlameTargets.fromWorkTree(workTree, workTree.listFiles());
+         assertNull(workTreeTargets.getCommitId());
+         assertEquals(2, workTreeTargets.getRoot().files.size());
+      }
+   }
+
+   @Test
+   public void testBlameBareRepository() throws Exception {
+      File source = folder.newFolder("repo");
+      TestRepos.createRepo(source).close();
+      File bareDir = folder.newFolder("bare.git");
+      Git.cloneRepository().setURI(source.toURI().toString()).setDirectory(bareDir).setBare(true)
+            .call().close();
+
+      try (Git git = Git.open(bareDir)) {
+         BlameTargets targets = BlameTargets.fromRevision(git.getRepository(), "HEAD");
+         BlameCounts counts = new BlameCounts();
+         BlameContext context = new BlameContext(counts);
+         Map<String, Integer> result = DirBlameResult
+               .sumResults(LinesPerAuthor.countFiles(git, targets, context), context.authorIds);
+
+         assertEquals(Integer.valueOf(7), result.get("Alice"));
+         assertEquals(Integer.valueOf(4), result.get("Bob"));
+         assertEquals(3, counts.getFiles());
+      }
+   }
+
+   @Test(expected = IOException.class)
+   public void testFromRevisionUnknownRevision() throws Exception {
+      try (Git git = TestRepos.createRepo(folder.newFolder("repo"))) {
+         BlameTargets.fromRevision(git.getRepository(), "no-such-branch");
+      }
+   }
+
+}
@@ -0,0 +1,80 @@
+package my.git.stats;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Map;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import my.git.stats.LinesPerAuthor.DirBlameResult;
+
+public class BoundedBlameTest {
+
+   private static final long DAY = 24 * 60 * 60;
+   private static final long START = 1_600_000_000L;
+
+   @Rule
+   public TemporaryFolder folder = new TemporaryFolder();
+
+   @Test
+   public void testLinesBeforeBoundary() throws Exception {
+      try (Git git = Git.init().setDirectory(folder.newFolder("repo")).call()) {
+         TestRepos.commit(git, "a.txt", "1\n2\n3\n", "Alice", START);
+         TestRepos.commit(git, "a.txt", "1\n2\n3\n4\n", "Alice", START + 10 * DAY);
+         RevCommit release = TestRepos.commit(git, "b.txt", "1\n", "Bob", START + 20 * DAY);
+         TestRepos.commit(git, "a.txt", "0\n1\n2\n3\n4\n", "Carol", START + 30 * DAY);
+         TestRepos.commit(git, "b.txt", "1\n2\n", "Carol", START + 40 * DAY);
+         BlameTargets targets = BlameTargets.fromRevision(git.getRepository(), "HEAD");
+
+         BlameContext blameContext = new BlameContext(new BlameCounts());
+         blameContext.sinceTime = release.getCommitTime();
+         Map<String, Integer> blame = DirBlameResult.sumResults(
+               LinesPerAuthor.countFiles(git, targets, blameContext), blameContext.authorIds);
+         assertEquals(Map.of("Bob", 1, "Carol", 2, LinesPerAuthor.BOUNDARY_AUTHOR, 4), blame);
+         assertEquals(7, blameContext.counts.getLines());
+
+         BlameContext replayContext = new BlameContext(new BlameCounts());
+         replayContext.sinceTime = release.getCommitTime();
+         assertEquals(blame, DirBlameResult.sumResults(
+               HistoryReplay.countFiles(git.getRepository(), targets, replayContext),
+               replayContext.authorIds));
+         // only the release and the two commits after it are replayed
+         assertEquals(3, replayContext.metrics.getSlowestFiles().size());
+      }
+   }
+
+   @Test
+   public void testReplayStopsAtBoundary() throws Exception {
+      try (Git git = Git.init().setDirectory(folder.newFolder("repo")).call()) {
+         TestRepos.commit(git, "a.txt", "1\n2\n3\n", "Alice", START);
+         TestRepos.commit(git, "c.txt", "x\ny\n", "Alice", START + DAY);
+         RevCommit release = TestRepos.commit(git, "b.txt", "1\n", "Bob", START + 20 * DAY);
+         git.rm().addFilepattern("c.txt").call();
+         TestRepos.commit(git, "d.txt", "x\ny\n", "Carol", START + 30 * DAY);
+         BlameTargets targets = BlameTargets.fromRevision(git.getRepository(), "HEAD");
+
+         // a.txt is unchanged since the boundary and d.txt is c.txt renamed
+         BlameContext context = new BlameContext(new BlameCounts());
+         context.sinceTime = release.getCommitTime();
+         assertEquals(Map.of("Bob", 1, LinesPerAuthor.BOUNDARY_AUTHOR, 5),
+               DirBlameResult.sumResults(
+                     HistoryReplay.countFiles(git.getRepository(), targets, context),
+                     context.authorIds));
+         assertEquals(6, context.counts.getLines());
+
+         // a boundary after the last commit leaves nothing to replay
+         BlameContext laterContext = new BlameContext(new BlameCounts());
+         laterContext.sinceTime = START + 40 * DAY;
+         assertEquals(Map.of(LinesPerAuthor.BOUNDARY_AUTHOR, 6),
+               DirBlameResult.sumResults(
+                     HistoryReplay.countFiles(git.getRepository(), targets, laterContext),
+                     laterContext.authorIds));
+         assertEquals(0, laterContext.metrics.getSlowestFiles().size());
+      }
+   }
+
+}
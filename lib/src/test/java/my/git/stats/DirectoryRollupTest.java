@@ -0,0 +1,52 @@
+package my.git.stats;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.eclipse.jgit.api.Git;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import my.git.stats.LinesPerAuthor.DirBlameResult;
+
+public class DirectoryRollupTest {
+
+   @Rule
+   public TemporaryFolder folder = new TemporaryFolder();
+
+   @Test
+   public void testTotalsOfEveryDirectory() throws Exception {
+      try (Git git = TestRepos.createRepo(folder.newFolder("repo"))) {
+         TestRepos.commit(git, "dir/other/d.txt", "1\n2\n3\n", "Carol");
+         BlameContext context = new BlameContext(new BlameCounts());
+         DirBlameResult result = LinesPerAuthor.countFiles(git,
+               BlameTargets.fromRevision(git.getRepository(), "HEAD"), context);
+
+         DirectoryRollup rollup = DirectoryRollup.of(result, context.authorIds);
+         // parents before their children, in tree order
+         assertEquals(Arrays.asList("", "dir", "dir/other", "dir/sub"), rollup.getDirectories());
+
+         Map<String, Long> root = new HashMap<>();
+         DirBlameResult.sumResults(result, context.authorIds)
+               .forEach((author, lines) -> root.put(author, (long) lines));
+         assertEquals(root, rollup.getTotals(""));
+
+         Map<String, Long> dir = rollup.getTotals("dir");
+         assertEquals(3, dir.size());
+         assertEquals(Long.valueOf(4), dir.get("Alice"));
+         assertEquals(Long.valueOf(2), dir.get("Bob"));
+         assertEquals(Long.valueOf(3), dir.get("Carol"));
+
+         assertEquals(4, rollup.getLines("dir/sub", "Alice"));
+         assertEquals(0, rollup.getLines("dir/sub", "Bob"));
+         assertEquals(3, rollup.getLines("dir/other", "Carol"));
+         assertEquals(0, rollup.getLines("missing", "Carol"));
+         assertEquals(0, rollup.getTotals("missing").size());
+      }
+   }
+
+}
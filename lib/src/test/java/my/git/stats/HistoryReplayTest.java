@@ -0,0 +1,123 @@
+package my.git.stats;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.MergeResult;
+import org.eclipse.jgit.lib.ObjectId;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import my.git.stats.LinesPerAuthor.DirBlameResult;
+
+public class HistoryReplayTest {
+
+   @Rule
+   public TemporaryFolder folder = new TemporaryFolder();
+
+   private static void assertSameAsBlame(Git git) throws Exception {
+      BlameTargets targets = BlameTargets.fromRevision(git.getRepository(), "HEAD");
+      BlameContext blameContext = new BlameContext(new BlameCounts());
+      Map<String, Integer> blame = DirBlameResult.sumResults(
+            LinesPerAuthor.countFiles(git, targets, blameContext), blameContext.authorIds);
+
+      BlameCounts counts = new BlameCounts();
+      BlameContext replayContext = new BlameContext(counts);
+      Map<String, Integer> replay = DirBlameResult.sumResults(
+            HistoryReplay.countFiles(git.getRepository(), targets, replayContext),
+            replayContext.authorIds);
+
+      assertEquals(blame, replay);
+      assertEquals(3, counts.getFiles());
+   }
+
+   @Test
+   public void testLinearHistory() throws Exception {
+      try (Git git = TestRepos.createRepo(folder.newFolder("repo"))) {
+         TestRepos.commit(git, "dir/b.txt", "0\n1\n2\n", "Carol");
+         assertSameAsBlame(git);
+      }
+   }
+
+   @Test
+   public void testMergeAndRename() throws Exception {
+      try (Git git = TestRepos.createRepo(folder.newFolder("repo"))) {
+         ObjectId base = git.getRepository().resolve("HEAD");
+         String mainBranch = git.getRepository().getBranch();
+
+         git.checkout().setCreateBranch(true).setName("feature").setStartPoint(base.name()).call();
+         TestRepos.commit(git, "dir/b.txt", "1\n2\n3\n", "Carol");
+
+         git.checkout().setName(mainBranch).call();
+         TestRepos.commit(git, "a.txt", "0\n1\n2\n3\n4\n5\n", "Dave");
+         File workTree = git.getRepository().getWorkTree();
+         Files.move(new File(workTree, "dir/sub/c.txt").toPath(),
+               new File(workTree, "c.txt").toPath());
+         git.rm().addFilepattern("dir/sub/c.txt").call();
+         git.add().addFilepattern("c.txt").call();
+         git.commit().setMessage("move c").call();
+         MergeResult merge = git.merge().include(git.getRepository().resolve("feature")).call();
+         assertTrue(merge.getMergeStatus().isSuccessful());
+
+         assertSameAsBlame(git);
+      }
+   }
+
+   @Test
+   public void testMetrics() throws Exception {
+      try (Git git = TestRepos.createRepo(folder.newFolder("repo"))) {
+         BlameContext context = new BlameContext(new BlameCounts());
+         HistoryReplay.countFiles(git.getRepository(),
+               BlameTargets.fromRevision(git.getRepository(), "HEAD"), context);
+         assertEquals(0, context.metrics.getPendingFiles());
+         assertEquals(0, context.metrics.getActiveFiles());
+         assertFalse(context.metrics.getSlowestFiles().isEmpty());
+      }
+   }
+
+   @Test
+   public void testFilteredHistory() throws Exception {
+      try (Git git = TestRepos.createRepo(folder.newFolder("repo"))) {
+         TestRepos.commit(git, "data.bin", "a\0b\n", "Carol");
+         TestRepos.commit(git, "data.bin", "a\0b\nc\n", "Dave");
+         TestRepos.commit(git, "dir/sub/c.txt", "x\n", "Dave");
+         BlameFilter filter = new BlameFilter(Collections.emptyList(),
+               Arrays.asList("dir/sub/**"), 0);
+         BlameTargets targets = filter.apply(git.getRepository(),
+               BlameTargets.fromRevision(git.getRepository(), "HEAD"));
+
+         BlameContext blameContext = new BlameContext(new BlameCounts());
+         Map<String, Integer> blame = DirBlameResult.sumResults(
+               LinesPerAuthor.countFiles(git, targets, blameContext), blameContext.authorIds);
+
+         BlameCounts counts = new BlameCounts();
+         BlameContext replayContext = new BlameContext(counts);
+         replayContext.filter = filter;
+         Map<String, Integer> replay = DirBlameResult.sumResults(
+               HistoryReplay.countFiles(git.getRepository(), targets, replayContext),
+               replayContext.authorIds);
+
+         assertEquals(blame, replay);
+         assertEquals(2, counts.getFiles());
+      }
+   }
+
+   @Test(expected = IllegalArgumentException.class)
+   public void testWorkTreeTargets() throws Exception {
+      try (Git git = TestRepos.createRepo(folder.newFolder("repo"))) {
+         HistoryReplay.countFiles(git.getRepository(),
+               BlameTargets.fromWorkTree(git.getRepository().getWorkTree(), new File[0]),
+               new BlameContext(new BlameCounts()));
+      }
+   }
+
+}
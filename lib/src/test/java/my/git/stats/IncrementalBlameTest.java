@@ -0,0 +1,121 @@
+package my.git.stats;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Map;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import my.git.stats.LinesPerAuthor.DirBlameResult;
+import my.git.stats.LinesPerAuthor.FileBlameResult;
+
+public class IncrementalBlameTest {
+
+   @Rule
+   public TemporaryFolder folder = new TemporaryFolder();
+
+   private static DirBlameResult blame(Git git, ObjectId commitId, BlameContext context)
+         throws Exception {
+      BlameTargets targets = BlameTargets.fromRevision(git.getRepository(), commitId.name());
+      return LinesPerAuthor.countFiles(git, targets, context);
+   }
+
+   @Test
+   public void testUpdateMatchesFullRun() throws Exception {
+      try (Git git = TestRepos.createRepo(folder.newFolder("repo"))) {
+         ObjectId oldCommit = git.getRepository().resolve("HEAD");
+         File saved = new File(folder.getRoot(), "result");
+         BlameContext oldContext = new BlameContext(new BlameCounts());
+         IncrementalBlame.save(saved, oldCommit, oldContext.getOptionsKey(),
+               blame(git, oldCommit, oldContext), oldContext.authorIds);
+
+         TestRepos.commit(git, "a.txt", "1\n2\n3\n4\n5\n6\n", "Carol");
+         TestRepos.commit(git, "new/d.txt", "1\n", "Carol");
+         git.rm().addFilepattern("dir/sub/c.txt").call();
+         RevCommit newCommit = git.commit().setMessage("remove c").call();
+
+         BlameCounts counts = new BlameCounts();
+         BlameContext context = new BlameContext(counts);
+         IncrementalBlame.Snapshot previous = IncrementalBlame.load(saved, context.authorIds,
+               context.referenceTime);
+         assertEquals(oldCommit, previous.commitId);
+         assertEquals(context.getOptionsKey(), previous.optionsKey);
+         IncrementalBlame.Changes changes = IncrementalBlame.diff(git.getRepository(),
+               previous.commitId, newCommit);
+         assertEquals(2, changes.removedPaths.size());
+
+         DirBlameResult updated = IncrementalBlame.apply(previous.result, changes,
+               LinesPerAuthor.countFiles(git, changes.targets, context));
+         assertEquals(2, counts.getFiles());
+
+         BlameContext fullContext = new BlameContext(new BlameCounts());
+         Map<String, Integer> expected = DirBlameResult
+               .sumResults(blame(git, newCommit, fullContext), fullContext.authorIds);
+         assertEquals(expected, DirBlameResult.sumResults(updated, context.authorIds));
+         assertEquals(Integer.valueOf(2), expected.get("Carol"));
+         assertEquals(Integer.valueOf(3), expected.get("Alice"));
+
+         // the saved results of unchanged files keep the ages of their lines
+         FileBlameResult b = updated.childDirResults.stream().filter(d -> d.path.equals("dir"))
+               .findFirst().get().childFileResults.get(0);
+         int agedLines = 0;
+         for (int bucket = 0; bucket < LineAges.BUCKET_COUNT; bucket++) {
+            agedLines += b.linesPerAuthor.getAgeLines(0, bucket);
+         }
+         assertEquals(b.linesPerAuthor.getLines(0), agedLines);
+
+         // dir/sub only contained the removed file
+         DirBlameResult dir = updated.childDirResults.stream().filter(d -> d.path.equals("dir"))
+               .findFirst().get();
+         assertTrue(dir.childDirResults.isEmpty());
+      }
+   }
+
+   @Test
+   public void testRevertedFileIsBlamedAgain() throws Exception {
+      try (Git git = TestRepos.createRepo(folder.newFolder("repo"))) {
+         ObjectId oldCommit = git.getRepository().resolve("HEAD");
+         String content = new String(Files.readAllBytes(
+               new File(git.getRepository().getWorkTree(), "a.txt").toPath()));
+         TestRepos.commit(git, "a.txt", "x\n", "Carol");
+         RevCommit newCommit = TestRepos.commit(git, "a.txt", content, "Dave");
+
+         IncrementalBlame.Changes changes = IncrementalBlame.diff(git.getRepository(),
+               oldCommit, newCommit);
+         assertEquals(Arrays.asList("a.txt"), changes.removedPaths);
+         assertEquals(1, changes.targets.getFileCount());
+      }
+   }
+
+   @Test
+   public void testIsAncestor() throws Exception {
+      try (Git git = TestRepos.createRepo(folder.newFolder("repo"))) {
+         ObjectId base = git.getRepository().resolve("HEAD");
+         RevCommit later = TestRepos.commit(git, "a.txt", "1\n", "Carol");
+         git.checkout().setCreateBranch(true).setName("side").setStartPoint(base.name()).call();
+         RevCommit side = TestRepos.commit(git, "b.txt", "1\n", "Dave");
+
+         assertTrue(IncrementalBlame.isAncestor(git.getRepository(), base, later));
+         assertFalse(IncrementalBlame.isAncestor(git.getRepository(), later, side));
+         assertFalse(IncrementalBlame.isAncestor(git.getRepository(), ObjectId.zeroId(), side));
+      }
+   }
+
+   @Test
+   public void testLoadMissingFile() throws Exception {
+      assertNull(IncrementalBlame.load(new File(folder.getRoot(), "missing"), new AuthorIds(),
+            0));
+   }
+
+}
@@ -0,0 +1,64 @@
+package my.git.stats;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Map;
+
+import org.eclipse.jgit.api.Git;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import my.git.stats.LinesPerAuthor.DirBlameResult;
+
+public class LineAgesTest {
+
+   private static final long DAY = 24 * 60 * 60;
+   private static final long NOW = 1_700_000_000L;
+
+   @Rule
+   public TemporaryFolder folder = new TemporaryFolder();
+
+   @Test
+   public void testBucketOf() {
+      assertEquals(0, LineAges.bucketOf(NOW, NOW));
+      assertEquals(0, LineAges.bucketOf(NOW - 29 * DAY, NOW));
+      assertEquals(1, LineAges.bucketOf(NOW - 30 * DAY, NOW));
+      assertEquals(1, LineAges.bucketOf(NOW - 364 * DAY, NOW));
+      assertEquals(2, LineAges.bucketOf(NOW - 365 * DAY, NOW));
+   }
+
+   @Test
+   public void testDescribe() {
+      assertEquals("<30d 1, <1y 2, older 3", LineAges.describe(new long[] { 1, 2, 3 }, 6));
+      assertEquals("<30d 1, <1y 0, older 0, unknown 4",
+            LineAges.describe(new long[] { 1, 0, 0 }, 5));
+   }
+
+   @Test
+   public void testAgesOfBothEngines() throws Exception {
+      try (Git git = Git.init().setDirectory(folder.newFolder("repo")).call()) {
+         TestRepos.commit(git, "a.txt", "1\n2\n3\n", "Alice", NOW - 400 * DAY);
+         TestRepos.commit(git, "a.txt", "1\n2\n3\n4\n", "Alice", NOW - 100 * DAY);
+         TestRepos.commit(git, "a.txt", "1\n2\n3\n4\n5\n6\n", "Bob", NOW - DAY);
+         BlameTargets targets = BlameTargets.fromRevision(git.getRepository(), "HEAD");
+
+         BlameContext blameContext = new BlameContext(new BlameCounts());
+         blameContext.referenceTime = NOW;
+         Map<String, long[]> blame = DirBlameResult.sumAges(
+               LinesPerAuthor.countFiles(git, targets, blameContext), blameContext.authorIds);
+         assertArrayEquals(new long[] { 0, 1, 3 }, blame.get("Alice"));
+         assertArrayEquals(new long[] { 2, 0, 0 }, blame.get("Bob"));
+
+         BlameContext replayContext = new BlameContext(new BlameCounts());
+         replayContext.referenceTime = NOW;
+         Map<String, long[]> replay = DirBlameResult.sumAges(
+               HistoryReplay.countFiles(git.getRepository(), targets, replayContext),
+               replayContext.authorIds);
+         assertArrayEquals(blame.get("Alice"), replay.get("Alice"));
+         assertArrayEquals(blame.get("Bob"), replay.get("Bob"));
+      }
+   }
+
+}
@@ -0,0 +1,73 @@
+package my.git.stats;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.StoredConfig;
+import org.eclipse.jgit.storage.file.WindowCacheConfig;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ObjectCacheSettingsTest {
+
+   @Rule
+   public TemporaryFolder folder = new TemporaryFolder();
+
+   @Test
+   public void testOptionsOverrideRepositoryConfig() throws Exception {
+      try (Git git = Git.init().setDirectory(folder.newFolder("repo")).call()) {
+         StoredConfig repoConfig = git.getRepository().getConfig();
+         repoConfig.setInt("core", null, "packedGitOpenFiles", 42);
+         repoConfig.setBoolean("core", null, "packedGitMmap", true);
+         repoConfig.save();
+
+         LinesPerAuthorOptions options = LinesPerAuthorOptions.parse(new String[] {
+               "--packed-git-window-size", "64k", "--packed-git-limit", "2g",
+               "--delta-base-cache-limit", "32m", "--packed-git-mmap", "false" });
+         WindowCacheConfig config = ObjectCacheSettings.of(git.getRepository(), options);
+
+         assertEquals(64 * 1024, config.getPackedGitWindowSize());
+         assertEquals(2L * 1024 * 1024 * 1024, config.getPackedGitLimit());
+         assertEquals(32 * 1024 * 1024, config.getDeltaBaseCacheLimit());
+         assertEquals(42, config.getPackedGitOpenFiles());
+         assertFalse(config.isPackedGitMMAP());
+         assertEquals("window 64 KiB, limit 2048 MiB, open files 42, delta base cache 32 MiB, "
+               + "mmap off", ObjectCacheSettings.describe(config));
+      }
+   }
+
+   @Test
+   public void testDefaults() throws Exception {
+      try (Git git = Git.init().setDirectory(folder.newFolder("repo")).call()) {
+         WindowCacheConfig config = ObjectCacheSettings.of(git.getRepository(),
+               LinesPerAuthorOptions.parse(new String[0]));
+         WindowCacheConfig defaults = new WindowCacheConfig();
+         assertEquals(defaults.getPackedGitWindowSize(), config.getPackedGitWindowSize());
+         assertEquals(defaults.getPackedGitLimit(), config.getPackedGitLimit());
+         assertEquals(defaults.getDeltaBaseCacheLimit(), config.getDeltaBaseCacheLimit());
+      }
+   }
+
+   @Test(expected = IllegalArgumentException.class)
+   public void testWindowSizeNotPowerOfTwo() {
+      WindowCacheConfig config = new WindowCacheConfig();
+      config.setPackedGitWindowSize(12 * 1024);
+      ObjectCacheSettings.install(config);
+   }
+
+   @Test(expected = IllegalArgumentException.class)
+   public void testMalformedSize() {
+      LinesPerAuthorOptions.parse(new String[] { "--packed-git-limit", "12x" });
+   }
+
+   @Test
+   public void testFormatBytes() {
+      assertEquals("512 bytes", ObjectCacheSettings.formatBytes(512));
+      assertEquals("8 KiB", ObjectCacheSettings.formatBytes(8 * 1024));
+      assertEquals("1.5 MiB", ObjectCacheSettings.formatBytes(3 * 512 * 1024));
+      assertEquals("10 MiB", ObjectCacheSettings.formatBytes(10 * 1024 * 1024));
+   }
+
+}
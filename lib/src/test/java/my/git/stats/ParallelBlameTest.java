@@ -0,0 +1,53 @@
+package my.git.stats;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+
+import org.eclipse.jgit.api.Git;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import my.git.stats.LinesPerAuthor.DirBlameResult;
+
+public class ParallelBlameTest {
+
+   @Rule
+   public TemporaryFolder folder = new TemporaryFolder();
+
+   @Test
+   public void testCountFilesMatchesSequential() throws Exception {
+      try (Git git = TestRepos.createRepo(folder.newFolder("repo"))) {
+         File workTree = git.getRepository().getWorkTree();
+
+         BlameCounts sequentialCounts = new BlameCounts();
+         BlameContext sequentialContext = new BlameContext(sequentialCounts);
+         Map<String, Integer> sequential = DirBlameResult.sumResults(
+               LinesPerAuthor.countFiles(git, workTree.listFiles(), sequentialContext),
+               sequentialContext.authorIds);
+
+         BlameCounts parallelCounts = new BlameCounts();
+         BlameContext parallelContext = new BlameContext(parallelCounts);
+         Map<String, Integer> parallel = DirBlameResult.sumResults(
+               new ParallelBlame(workTree, 4, parallelContext)
+                     .countFiles(BlameTargets.fromWorkTree(workTree, workTree.listFiles())),
+               parallelContext.authorIds);
+
+         assertEquals(sequential, parallel);
+         assertEquals(Integer.valueOf(7), parallel.get("Alice"));
+         assertEquals(Integer.valueOf(4), parallel.get("Bob"));
+         assertEquals(3, parallelCounts.getFiles());
+         assertEquals(11, parallelCounts.getLines());
+         assertEquals(sequentialCounts.getLines(), parallelCounts.getLines());
+      }
+   }
+
+   @Test(expected = IllegalArgumentException.class)
+   public void testInvalidParallelism() throws IOException {
+      new ParallelBlame(folder.getRoot(), 0, new BlameContext(new BlameCounts()));
+   }
+
+}
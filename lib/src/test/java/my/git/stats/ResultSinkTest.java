@@ -0,0 +1,120 @@
+package my.git.stats;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.jgit.api.Git;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import my.git.stats.LinesPerAuthor.DirBlameResult;
+import my.git.stats.LinesPerAuthor.FileBlameResult;
+import my.git.stats.LinesPerAuthorOptions.OutputFormat;
+
+public class ResultSinkTest {
+
+   @Rule
+   public TemporaryFolder folder = new TemporaryFolder();
+
+   private DirBlameResult countFiles(Git git, OutputFormat format, File output,
+         Map<String, Integer> totals) throws Exception {
+      BlameTargets targets = BlameTargets.fromRevision(git.getRepository(), "HEAD");
+      BlameContext context = new BlameContext(new BlameCounts());
+      try (ResultSink sink = ResultSink.open(format, output, context.authorIds)) {
+         context.sink = sink;
+         DirBlameResult result = LinesPerAuthor.countFiles(git, targets, context);
+         totals.putAll(sink.getTotals());
+         return result;
+      }
+   }
+
+   @Test
+   public void testStreamedResultsAreNotKept() throws Exception {
+      try (Git git = TestRepos.createRepo(folder.newFolder("repo"))) {
+         Map<String, Integer> totals = new HashMap<>();
+         DirBlameResult result = countFiles(git, OutputFormat.JSONL,
+               new File(folder.getRoot(), "out.jsonl"), totals);
+
+         assertTrue(result.childFileResults.isEmpty());
+         assertTrue(result.childDirResults.isEmpty());
+         assertEquals(Integer.valueOf(7), totals.get("Alice"));
+         assertEquals(Integer.valueOf(4), totals.get("Bob"));
+      }
+   }
+
+   @Test
+   public void testJsonLines() throws Exception {
+      try (Git git = TestRepos.createRepo(folder.newFolder("repo"))) {
+         File output = new File(folder.getRoot(), "out.jsonl");
+         countFiles(git, OutputFormat.JSONL, output, new HashMap<>());
+
+         List<String> lines = Files.readAllLines(output.toPath(), StandardCharsets.UTF_8);
+         assertEquals(3, lines.size());
+         assertTrue(lines.contains("{\"path\":\"dir/b.txt\",\"authors\":{\"Bob\":2}}"));
+      }
+   }
+
+   @Test
+   public void testCsv() throws Exception {
+      try (Git git = TestRepos.createRepo(folder.newFolder("repo"))) {
+         File output = new File(folder.getRoot(), "out.csv");
+         countFiles(git, OutputFormat.CSV, output, new HashMap<>());
+
+         List<String> lines = Files.readAllLines(output.toPath(), StandardCharsets.UTF_8);
+         assertEquals("path,author,lines", lines.get(0));
+         // a.txt has two authors
+         assertEquals(5, lines.size());
+         assertTrue(lines.contains("dir/sub/c.txt,Alice,4"));
+      }
+   }
+
+   @Test
+   public void testBinary() throws Exception {
+      try (Git git = TestRepos.createRepo(folder.newFolder("repo"))) {
+         File output = new File(folder.getRoot(), "out.bin");
+         Map<String, Integer> totals = new HashMap<>();
+         countFiles(git, OutputFormat.BINARY, output, totals);
+
+         List<String> paths = new ArrayList<>();
+         Map<String, Integer> read = new HashMap<>();
+         ResultSink.readBinary(output, (path, linesPerAuthor) -> {
+            paths.add(path);
+            linesPerAuthor.forEach((author, lines) -> read.merge(author, lines, Integer::sum));
+         });
+         assertEquals(3, paths.size());
+         assertEquals(totals, read);
+      }
+   }
+
+   @Test
+   public void testQuoting() throws Exception {
+      AuthorIds authorIds = new AuthorIds();
+      AuthorCounts counts = new AuthorCounts();
+      counts.add(authorIds.intern("Doe, \"Jane\""), 2);
+      FileBlameResult result = new FileBlameResult("a\\b.txt", counts);
+
+      File csv = new File(folder.getRoot(), "out.csv");
+      try (ResultSink sink = ResultSink.open(OutputFormat.CSV, csv, authorIds)) {
+         sink.add(result);
+      }
+      assertEquals("a\\b.txt,\"Doe, \"\"Jane\"\"\",2",
+            Files.readAllLines(csv.toPath(), StandardCharsets.UTF_8).get(1));
+
+      File json = new File(folder.getRoot(), "out.jsonl");
+      try (ResultSink sink = ResultSink.open(OutputFormat.JSONL, json, authorIds)) {
+         sink.add(result);
+      }
+      assertEquals("{\"path\":\"a\\\\b.txt\",\"authors\":{\"Doe, \\\"Jane\\\"\":2}}",
+            Files.readAllLines(json.toPath(), StandardCharsets.UTF_8).get(0));
+   }
+
+}
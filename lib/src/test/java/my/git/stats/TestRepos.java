@@ -0,0 +1,63 @@
+package my.git.stats;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Instant;
+import java.time.ZoneOffset;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.revwalk.RevCommit;
+
+/**
+ * Builds small repositories for the git stats tests.
+ */
+class TestRepos {
+
+   /**
+    * Writes a file and commits it as the given author.
+    */
+   static RevCommit commit(Git git, String path, String content, String author)
+         throws Exception {
+      return commit(git, path, content, new PersonIdent(author, email(author)));
+   }
+
+   /**
+    * Writes a file and commits it as the given author at the given time.
+    *
+    * @param time the author and commit time in seconds since the epoch
+    */
+   static RevCommit commit(Git git, String path, String content, String author, long time)
+         throws Exception {
+      return commit(git, path, content,
+            new PersonIdent(author, email(author), Instant.ofEpochSecond(time), ZoneOffset.UTC));
+   }
+
+   private static RevCommit commit(Git git, String path, String content, PersonIdent ident)
+         throws Exception {
+      File file = new File(git.getRepository().getWorkTree(), path);
+      file.getParentFile().mkdirs();
+      Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+      git.add().addFilepattern(path).call();
+      return git.commit().setMessage(path).setAuthor(ident).setCommitter(ident).call();
+   }
+
+   private static String email(String author) {
+      return author.toLowerCase() + "@example.com";
+   }
+
+   /**
+    * Creates a repository in which Alice owns 7 lines and Bob owns 4 lines,
+    * spread over three files in nested directories.
+    */
+   static Git createRepo(File directory) throws Exception {
+      Git git = Git.init().setDirectory(directory).call();
+      commit(git, "a.txt", "1\n2\n3\n", "Alice");
+      commit(git, "dir/b.txt", "1\n2\n", "Bob");
+      commit(git, "dir/sub/c.txt", "1\n2\n3\n4\n", "Alice");
+      commit(git, "a.txt", "1\n2\n3\n4\n5\n", "Bob");
+      return git;
+   }
+
+}
@@ -0,0 +1,69 @@
+package my.git.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class AtomicFilesTest {
+
+   @Rule
+   public TemporaryFolder folder = new TemporaryFolder();
+
+   @Test
+   public void testWriteAndRead() throws Exception {
+      File file = new File(folder.getRoot(), "dir/file");
+      AtomicFiles.write(file, 1, 2, out -> out.writeUTF("first"));
+      AtomicFiles.write(file, 1, 2, out -> out.writeUTF("second"));
+
+      assertEquals("second", AtomicFiles.read(file, 1, 2, "a test file", in -> in.readUTF()));
+      assertArrayEquals(new String[] { "file" }, file.getParentFile().list());
+   }
+
+   @Test
+   public void testShortFileName() throws Exception {
+      File file = new File(folder.getRoot(), "c");
+      AtomicFiles.write(file, 1, 2, out -> out.writeUTF("short"));
+      assertEquals("short", AtomicFiles.read(file, 1, 2, "a test file", in -> in.readUTF()));
+      assertArrayEquals(new String[] { "c" }, folder.getRoot().list());
+   }
+
+   @Test
+   public void testReadOtherVersion() throws Exception {
+      File file = new File(folder.getRoot(), "file");
+      AtomicFiles.write(file, 1, 2, out -> out.writeUTF("old"));
+      assertNull(AtomicFiles.read(file, 1, 3, "a test file", in -> in.readUTF()));
+   }
+
+   @Test(expected = IOException.class)
+   public void testReadOtherFile() throws Exception {
+      File file = folder.newFile();
+      Files.write(file.toPath(), "not a test file".getBytes());
+      AtomicFiles.read(file, 1, 2, "a test file", in -> in.readUTF());
+   }
+
+   @Test
+   public void testFailedWriteKeepsPreviousFile() throws Exception {
+      File file = new File(folder.getRoot(), "file");
+      AtomicFiles.write(file, 1, 2, out -> out.writeUTF("first"));
+      try {
+         AtomicFiles.write(file, 1, 2, out -> {
+            out.writeUTF("second");
+            throw new IOException("failed");
+         });
+      } catch (IOException e) {
+         assertEquals("failed", e.getMessage());
+      }
+
+      assertEquals("first", AtomicFiles.read(file, 1, 2, "a test file", in -> in.readUTF()));
+      assertArrayEquals(new String[] { "file" }, folder.getRoot().list());
+   }
+
+}